@@ -0,0 +1,337 @@
+package orig2011.bench;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.event.KeyEvent;
+import java.awt.image.BufferedImage;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Micro benchmarks of the hot paths of the game framework, run against
+ * every version package orig2011.v0 to orig2011.v7 so the effect of each
+ * refactoring can be compared.
+ *
+ * The versions don't share any types, so everything is called through
+ * reflection; the call overhead is the same for all versions. Each
+ * benchmark is warmed up before it is measured, and the results are fed
+ * into a sink so the JIT can't remove the work.
+ *
+ * <ul>
+ * <li>reversi: ReversiModel.gameUpdate with a key script sweeping the
+ * cursor over the board and pressing space on every cell, exercising
+ * canTurn and turnOver.</li>
+ * <li>gold: GoldModel.gameUpdate with the collector walking in a square.</li>
+ * <li>paint: GameView.paintComponent of a Reversi board into an offscreen
+ * BufferedImage, drawing every tile. Versions whose view keeps the board
+ * in an image have all its tiles marked dirty before each paint, so all
+ * versions do the same work.</li>
+ * <li>cached paint: the same paint with nothing marked dirty, so only the
+ * cached board image is drawn. n/a for versions without one.</li>
+ * <li>fan-out: the gold benchmark with eight PropertyChangeListeners
+ * attached, for the versions whose models are observable.</li>
+ * </ul>
+ *
+ * Usage: FrameworkBenchmark [milliseconds per benchmark] [versions...]
+ */
+public class FrameworkBenchmark {
+
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int LISTENERS = 8;
+
+	/** Keys walking the gold collector in a small square. */
+	private static final int[] GOLD_KEYS = { KeyEvent.VK_LEFT,
+			KeyEvent.VK_UP, KeyEvent.VK_RIGHT, KeyEvent.VK_DOWN };
+
+	/** Prevents the JIT from discarding results. */
+	private static volatile long sink;
+
+	/** One benchmarked operation. */
+	private interface Operation {
+		/** @return Some value depending on the work done. */
+		long run() throws Exception;
+	}
+
+	/**
+	 * A game model of one version, restarted whenever the game is over.
+	 */
+	private static final class Game {
+		private final Class<?> modelClass;
+		private final Method gameUpdate;
+		private final int listeners;
+		private Object model;
+
+		Game(final Class<?> modelClass, final int listeners) throws Exception {
+			this.modelClass = modelClass;
+			this.gameUpdate = modelClass.getMethod("gameUpdate", int.class);
+			this.listeners = listeners;
+			restart();
+		}
+
+		private void restart() throws Exception {
+			this.model = this.modelClass.getConstructor().newInstance();
+			if (this.listeners > 0) {
+				Method addObserver = this.modelClass.getMethod("addObserver",
+						PropertyChangeListener.class);
+				for (int i = 0; i < this.listeners; i++) {
+					addObserver.invoke(this.model, new PropertyChangeListener() {
+						@Override
+						public void propertyChange(final PropertyChangeEvent evt) {
+							sink += evt.getPropertyName().length();
+						}
+					});
+				}
+			}
+		}
+
+		/** @return 1 if the update ended the game, 0 otherwise. */
+		long update(final int key) throws Exception {
+			try {
+				this.gameUpdate.invoke(this.model, Integer.valueOf(key));
+				return 0;
+			} catch (InvocationTargetException e) {
+				if (e.getCause().getClass().getSimpleName()
+						.equals("GameOverException")) {
+					restart();
+					return 1;
+				}
+				throw e;
+			}
+		}
+
+		Object getModel() {
+			return this.model;
+		}
+	}
+
+	/**
+	 * Builds the key script for the reversi benchmark: sweep the cursor
+	 * over every cell of the board, pressing space on each of them.
+	 */
+	private static int[] reversiKeys(final Dimension size) {
+		int[] keys = new int[size.width * size.height * 3];
+		int n = 0;
+		for (int y = 0; y < size.height; y++) {
+			for (int x = 0; x < size.width; x++) {
+				keys[n++] = KeyEvent.VK_SPACE;
+				keys[n++] = (y % 2 == 0) ? KeyEvent.VK_RIGHT : KeyEvent.VK_LEFT;
+			}
+			keys[n++] = KeyEvent.VK_DOWN;
+		}
+		int[] script = new int[n + size.height];
+		System.arraycopy(keys, 0, script, 0, n);
+		for (int i = 0; i < size.height; i++) {
+			script[n + i] = KeyEvent.VK_UP;
+		}
+		return script;
+	}
+
+	/**
+	 * Runs the operation repeatedly for the given time.
+	 *
+	 * @return Operations per second.
+	 */
+	private static double measure(final Operation op, final long millis)
+			throws Exception {
+		for (int round = 0; round < WARMUP_ROUNDS; round++) {
+			runFor(op, millis / 2);
+		}
+		long start = System.nanoTime();
+		long count = runFor(op, millis);
+		return count * 1e9 / (System.nanoTime() - start);
+	}
+
+	private static long runFor(final Operation op, final long millis)
+			throws Exception {
+		long end = System.nanoTime() + millis * 1000000L;
+		long count = 0;
+		long result = 0;
+		do {
+			for (int i = 0; i < 64; i++) {
+				result += op.run();
+			}
+			count += 64;
+		} while (System.nanoTime() < end);
+		sink += result;
+		return count;
+	}
+
+	private static String benchmarkVersion(final String pkg, final long millis)
+			throws Exception {
+		Class<?> reversi = Class.forName(pkg + ".ReversiModel");
+		Class<?> gold = Class.forName(pkg + ".GoldModel");
+		Class<?> view = Class.forName(pkg + ".GameView");
+		Class<?> constants = Class.forName(pkg + ".Constants");
+		Dimension size = (Dimension) constants.getMethod("getGameSize")
+				.invoke(null);
+
+		final Game reversiGame = new Game(reversi, 0);
+		final int[] script = reversiKeys(size);
+		double reversiRate = measure(new Operation() {
+			private int next;
+
+			@Override
+			public long run() throws Exception {
+				int key = script[this.next];
+				this.next = (this.next + 1) % script.length;
+				return reversiGame.update(key);
+			}
+		}, millis);
+
+		final Game goldGame = new Game(gold, 0);
+		double goldRate = measure(goldOperation(goldGame), millis);
+
+		final Object gameView = view.getConstructor().newInstance();
+		final Game paintedGame = new Game(reversi, 0);
+		Method setModel = null;
+		for (Method m : view.getMethods()) {
+			if (m.getName().equals("setModel")) {
+				setModel = m;
+			}
+		}
+		setModel.invoke(gameView, paintedGame.getModel());
+		Dimension preferred = (Dimension) view.getMethod("getPreferredSize")
+				.invoke(gameView);
+		view.getMethod("setSize", Dimension.class).invoke(gameView, preferred);
+		final Method paint = view.getMethod("paintComponent", Graphics.class);
+		final Method markAllDirty = declaredMethod(view, "markAllDirty");
+		final BufferedImage image = new BufferedImage(preferred.width,
+				preferred.height, BufferedImage.TYPE_INT_RGB);
+		double paintRate = measure(
+				paintOperation(gameView, paint, markAllDirty, image), millis);
+		String cachedPaint = "n/a";
+		if (markAllDirty != null) {
+			cachedPaint = format(measure(
+					paintOperation(gameView, paint, null, image), millis));
+		}
+
+		String fanOut = "n/a";
+		if (hasMethod(gold, "addObserver")) {
+			final Game observed = new Game(gold, LISTENERS);
+			fanOut = format(measure(goldOperation(observed), millis));
+		}
+
+		return pad(format(reversiRate)) + pad(format(goldRate))
+				+ pad(format(paintRate)) + pad(cachedPaint) + pad(fanOut);
+	}
+
+	/**
+	 * Paints the view into the image.
+	 *
+	 * @param markAllDirty
+	 *            Called on the view before every paint, or null.
+	 */
+	private static Operation paintOperation(final Object gameView,
+			final Method paint, final Method markAllDirty,
+			final BufferedImage image) {
+		return new Operation() {
+			@Override
+			public long run() throws Exception {
+				if (markAllDirty != null) {
+					markAllDirty.invoke(gameView);
+				}
+				Graphics g = image.createGraphics();
+				try {
+					paint.invoke(gameView, g);
+				} finally {
+					g.dispose();
+				}
+				return image.getRGB(0, 0);
+			}
+		};
+	}
+
+	private static Operation goldOperation(final Game game) {
+		return new Operation() {
+			private int next;
+
+			@Override
+			public long run() throws Exception {
+				int key = GOLD_KEYS[this.next];
+				this.next = (this.next + 1) % GOLD_KEYS.length;
+				return game.update(key);
+			}
+		};
+	}
+
+	/**
+	 * @return The method without parameters declared by the class, made
+	 *         accessible, or null if it has none.
+	 */
+	private static Method declaredMethod(final Class<?> c, final String name) {
+		try {
+			Method m = c.getDeclaredMethod(name);
+			m.setAccessible(true);
+			return m;
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private static boolean hasMethod(final Class<?> c, final String name) {
+		for (Method m : c.getMethods()) {
+			if (m.getName().equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String format(final double rate) {
+		return String.format("%,.0f/s", rate);
+	}
+
+	private static String pad(final String s) {
+		StringBuilder sb = new StringBuilder(s);
+		while (sb.length() < 18) {
+			sb.append(' ');
+		}
+		return sb.toString();
+	}
+
+	public static void main(final String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+		String[] versions = new String[8];
+		for (int i = 0; i < versions.length; i++) {
+			versions[i] = "v" + i;
+		}
+		if (args.length > 1) {
+			versions = new String[args.length - 1];
+			System.arraycopy(args, 1, versions, 0, versions.length);
+		}
+
+		// The models print to stdout on every move, keep that out of the
+		// measurements.
+		PrintStream out = System.out;
+		PrintStream quiet = new PrintStream(new OutputStream() {
+			@Override
+			public void write(final int b) {
+				// Discard.
+			}
+		});
+
+		out.println(pad("version") + pad("reversi keys") + pad("gold updates")
+				+ pad("paints") + pad("cached paints")
+				+ pad("gold, " + LISTENERS + " listeners"));
+		for (String version : versions) {
+			String result;
+			System.setOut(quiet);
+			try {
+				result = benchmarkVersion("orig2011." + version, millis);
+			} catch (ClassNotFoundException e) {
+				result = "not compiled: " + e.getMessage();
+			} catch (LinkageError e) {
+				result = "not loadable: " + e;
+			} finally {
+				System.setOut(out);
+			}
+			out.println(pad(version) + result);
+		}
+		out.println("(sink " + sink + ")");
+	}
+}
@@ -0,0 +1,171 @@
+package orig2011.v7;
+
+import orig2011.v7.ReversiModel.PieceColor;
+import orig2011.v7.ReversiModel.Turn;
+
+/**
+ * A computer player choosing its moves with an iterative deepening
+ * alpha-beta search within a fixed time budget per move, optionally
+ * searching on several threads. Once few enough cells are empty, the
+ * endgame is solved exactly instead.
+ */
+public class AlphaBetaPlayer implements ReversiPlayer {
+
+	/** The deepest search ever attempted. */
+	private static final int MAX_DEPTH = 64;
+
+	/** Log2 of the default number of transposition table entries. */
+	private static final int DEFAULT_TABLE_BITS = 20;
+
+	/** Positions with at most this many empties are solved exactly. */
+	private static final int ENDGAME_EMPTIES = 14;
+
+	private final long budgetNanos;
+	private final TranspositionTable table;
+	private final int threads;
+	private ParallelReversiSearch search;
+	private EndgameSolver solver;
+
+	/* Totals of the searched and solved moves, for the tools to report. */
+	private int searchedMoves;
+	private long searchedDepths;
+	private long searchNodes;
+	private long searchNanos;
+	private int solvedMoves;
+	private long solveNodes;
+	private long solveNanos;
+
+	/**
+	 * Creates a player which thinks for the given time per move.
+	 *
+	 * @param budgetMillis
+	 *            The time budget per move in milliseconds.
+	 */
+	public AlphaBetaPlayer(final long budgetMillis) {
+		this(budgetMillis, new TranspositionTable(DEFAULT_TABLE_BITS));
+	}
+
+	/**
+	 * Creates a player which thinks for the given time per move, keeping
+	 * its search results in the given table.
+	 *
+	 * @param budgetMillis
+	 *            The time budget per move in milliseconds.
+	 * @param table
+	 *            The transposition table, or null to search without one.
+	 */
+	public AlphaBetaPlayer(final long budgetMillis,
+			final TranspositionTable table) {
+		this(budgetMillis, table, 1);
+	}
+
+	/**
+	 * Creates a player which searches on several threads sharing one
+	 * transposition table.
+	 *
+	 * @param budgetMillis
+	 *            The time budget per move in milliseconds.
+	 * @param table
+	 *            The transposition table, or null to search without one.
+	 * @param threads
+	 *            The number of search threads.
+	 */
+	public AlphaBetaPlayer(final long budgetMillis,
+			final TranspositionTable table, final int threads) {
+		this.budgetNanos = budgetMillis * 1000000L;
+		this.table = table;
+		this.threads = threads;
+	}
+
+	@Override
+	public synchronized Position chooseMove(final ReversiBoard board,
+			final Turn turn) {
+		if (this.search == null) {
+			this.search = new ParallelReversiSearch(board.getWidth(),
+					board.getHeight(), this.table, this.threads);
+		}
+		PieceColor color = turn == Turn.BLACK ? PieceColor.BLACK : PieceColor.WHITE;
+		int cell;
+		if (board.count(PieceColor.EMPTY) <= ENDGAME_EMPTIES
+				&& board.getWidth() * board.getHeight()
+						<= BitboardReversiBoard.MAX_CELLS) {
+			if (this.solver == null) {
+				this.solver = new EndgameSolver(board.getWidth(),
+						board.getHeight(), this.threads);
+			}
+			cell = this.solver.solve(board, color);
+			this.solvedMoves++;
+			this.solveNodes += this.solver.getNodes();
+			this.solveNanos += this.solver.getElapsedNanos();
+		} else {
+			cell = this.search.search(board, color, this.budgetNanos,
+					MAX_DEPTH);
+			this.searchedMoves++;
+			this.searchedDepths += this.search.getCompletedDepth();
+			this.searchNodes += this.search.getNodes();
+			this.searchNanos += this.search.getElapsedNanos();
+		}
+
+		if (cell < 0) {
+			return null;
+		}
+		return new Position(cell % board.getWidth(), cell / board.getWidth());
+	}
+
+	/** @return The search used for the last move, or null before any move. */
+	public ParallelReversiSearch getSearch() {
+		return this.search;
+	}
+
+	/** @return The number of moves chosen by the alpha-beta search. */
+	public int getSearchedMoves() {
+		return this.searchedMoves;
+	}
+
+	/** @return The sum of the depths completed by the searched moves. */
+	public long getSearchedDepths() {
+		return this.searchedDepths;
+	}
+
+	/** @return The number of nodes visited by all searched moves. */
+	public long getSearchNodes() {
+		return this.searchNodes;
+	}
+
+	/** @return The time spent on all searched moves in nanoseconds. */
+	public long getSearchNanos() {
+		return this.searchNanos;
+	}
+
+	/** @return The number of moves chosen by the endgame solver. */
+	public int getSolvedMoves() {
+		return this.solvedMoves;
+	}
+
+	/** @return The number of nodes visited by all solved moves. */
+	public long getSolveNodes() {
+		return this.solveNodes;
+	}
+
+	/** @return The time spent on all solved moves in nanoseconds. */
+	public long getSolveNanos() {
+		return this.solveNanos;
+	}
+
+	/**
+	 * Stops the threads of the search and the solver. They are created
+	 * again if the player is asked for another move. May be called from
+	 * another thread, and then waits for the move being chosen.
+	 */
+	@Override
+	public synchronized void shutdown() {
+		if (this.search != null) {
+			this.search.shutdown();
+			this.search = null;
+		}
+		if (this.solver != null) {
+			this.solver.shutdown();
+			this.solver = null;
+		}
+	}
+}
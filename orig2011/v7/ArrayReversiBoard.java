@@ -0,0 +1,181 @@
+package orig2011.v7;
+
+import orig2011.v7.ReversiModel.Direction;
+import orig2011.v7.ReversiModel.PieceColor;
+
+/**
+ * A Reversi board stored as a matrix of pieces. Works for any board size,
+ * rules are evaluated by walking the eight rays out from a cell.
+ */
+public class ArrayReversiBoard implements ReversiBoard {
+
+	/** The eight real directions, cached since values() copies its array. */
+	private static final Direction[] DIRECTIONS = {
+			Direction.EAST, Direction.SOUTHEAST, Direction.SOUTH,
+			Direction.SOUTHWEST, Direction.WEST, Direction.NORTHWEST,
+			Direction.NORTH, Direction.NORTHEAST };
+
+	private final int width;
+	private final int height;
+	private final PieceColor[][] board;
+	private long hash;
+
+	/**
+	 * Creates an empty board of the given size.
+	 */
+	public ArrayReversiBoard(final int width, final int height) {
+		this.width = width;
+		this.height = height;
+		this.board = new PieceColor[width][height];
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				this.board[x][y] = PieceColor.EMPTY;
+			}
+		}
+	}
+
+	private ArrayReversiBoard(final ArrayReversiBoard other) {
+		this.width = other.width;
+		this.height = other.height;
+		this.board = new PieceColor[this.width][];
+		for (int x = 0; x < this.width; x++) {
+			this.board[x] = other.board[x].clone();
+		}
+		this.hash = other.hash;
+	}
+
+	@Override
+	public int getWidth() {
+		return this.width;
+	}
+
+	@Override
+	public int getHeight() {
+		return this.height;
+	}
+
+	@Override
+	public PieceColor get(final int x, final int y) {
+		return this.board[x][y];
+	}
+
+	@Override
+	public void set(final int x, final int y, final PieceColor color) {
+		int cell = y * this.width + x;
+		this.hash ^= Zobrist.key(cell, this.board[x][y]) ^ Zobrist.key(cell, color);
+		this.board[x][y] = color;
+	}
+
+	@Override
+	public boolean isLegal(final PieceColor color, final int x, final int y) {
+		if (this.board[x][y] != PieceColor.EMPTY) {
+			return false;
+		}
+		PieceColor opponentColor = PieceColor.opposite(color);
+		for (Direction d : DIRECTIONS) {
+			int xDelta = d.getXDelta();
+			int yDelta = d.getYDelta();
+			int cx = x + xDelta;
+			int cy = y + yDelta;
+			boolean canTurn = false;
+			while (cx >= 0 && cx < this.width && cy >= 0 && cy < this.height) {
+				if (this.board[cx][cy] == opponentColor) {
+					canTurn = true;
+				} else if (this.board[cx][cy] == color && canTurn) {
+					return true;
+				} else {
+					break;
+				}
+				cx += xDelta;
+				cy += yDelta;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean hasLegalMove(final PieceColor color) {
+		for (int x = 0; x < this.width; x++) {
+			for (int y = 0; y < this.height; y++) {
+				if (isLegal(color, x, y)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public int getFlips(final PieceColor color, final int x, final int y,
+			final int[] cells) {
+		if (this.board[x][y] != PieceColor.EMPTY) {
+			return 0;
+		}
+		PieceColor opponentColor = PieceColor.opposite(color);
+		int count = 0;
+		for (Direction d : DIRECTIONS) {
+			int xDelta = d.getXDelta();
+			int yDelta = d.getYDelta();
+			int cx = x + xDelta;
+			int cy = y + yDelta;
+			boolean canTurn = false;
+			while (cx >= 0 && cx < this.width && cy >= 0 && cy < this.height) {
+				if (this.board[cx][cy] == opponentColor) {
+					canTurn = true;
+				} else if (this.board[cx][cy] == color && canTurn) {
+					// Move backwards to the placed disc, collecting the
+					// discs in between.
+					cx -= xDelta;
+					cy -= yDelta;
+					while (!(cx == x && cy == y)) {
+						cells[count++] = cy * this.width + cx;
+						cx -= xDelta;
+						cy -= yDelta;
+					}
+					break;
+				} else {
+					break;
+				}
+				cx += xDelta;
+				cy += yDelta;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public int getLegalMoves(final PieceColor color, final int[] cells) {
+		int count = 0;
+		for (int y = 0; y < this.height; y++) {
+			for (int x = 0; x < this.width; x++) {
+				if (isLegal(color, x, y)) {
+					cells[count++] = y * this.width + x;
+				}
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public int count(final PieceColor color) {
+		int count = 0;
+		for (int x = 0; x < this.width; x++) {
+			for (int y = 0; y < this.height; y++) {
+				if (this.board[x][y] == color) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public long getHash() {
+		return this.hash;
+	}
+
+	@Override
+	public ReversiBoard copy() {
+		return new ArrayReversiBoard(this);
+	}
+}
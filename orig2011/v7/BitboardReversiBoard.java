@@ -0,0 +1,247 @@
+package orig2011.v7;
+
+import orig2011.v7.ReversiModel.PieceColor;
+
+/**
+ * A Reversi board packed into two 64 bit masks, one per color. Bit
+ * <code>y * width + x</code> represents cell (x,y), so boards of at most
+ * 64 cells are supported.
+ *
+ * Moves are generated for all cells at once by shifting the masks one
+ * step at a time in each of the eight directions, masking away the
+ * bits which would wrap around a board edge.
+ */
+public class BitboardReversiBoard implements ReversiBoard {
+
+	/** The largest number of cells a bitboard can hold. */
+	public static final int MAX_CELLS = 64;
+
+	private final int width;
+	private final int height;
+
+	/** Bit mask of all cells on the board. */
+	private final long full;
+
+	/** Shift distance per direction, positive values shift left. */
+	private final int[] shifts;
+
+	/** Cells a bit may land on after shifting in each direction. */
+	private final long[] masks;
+
+	private long black;
+	private long white;
+	private long hash;
+
+	/**
+	 * Creates an empty board of the given size.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the board has more than 64 cells.
+	 */
+	public BitboardReversiBoard(final int width, final int height) {
+		if (width <= 0 || height <= 0 || width * height > MAX_CELLS) {
+			throw new IllegalArgumentException("Bitboards hold at most "
+					+ MAX_CELLS + " cells, got " + width + "x" + height);
+		}
+		this.width = width;
+		this.height = height;
+		int cells = width * height;
+		this.full = cells == MAX_CELLS ? -1L : (1L << cells) - 1;
+
+		long notFirstColumn = 0;
+		long notLastColumn = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				long bit = 1L << (y * width + x);
+				if (x != 0) {
+					notFirstColumn |= bit;
+				}
+				if (x != width - 1) {
+					notLastColumn |= bit;
+				}
+			}
+		}
+
+		// EAST, SOUTHEAST, SOUTH, SOUTHWEST, WEST, NORTHWEST, NORTH, NORTHEAST
+		this.shifts = new int[] { 1, width + 1, width, width - 1,
+				-1, -(width + 1), -width, -(width - 1) };
+		this.masks = new long[] { notFirstColumn, notFirstColumn, this.full,
+				notLastColumn, notLastColumn, notLastColumn, this.full,
+				notFirstColumn };
+	}
+
+	private BitboardReversiBoard(final BitboardReversiBoard other) {
+		this.width = other.width;
+		this.height = other.height;
+		this.full = other.full;
+		this.shifts = other.shifts;
+		this.masks = other.masks;
+		this.black = other.black;
+		this.white = other.white;
+		this.hash = other.hash;
+	}
+
+	/**
+	 * Move every bit of the mask one step in the given direction.
+	 */
+	private long shift(final long bits, final int dir) {
+		int s = this.shifts[dir];
+		long moved;
+		if (s >= 0) {
+			moved = s >= 64 ? 0 : bits << s;
+		} else {
+			moved = -s >= 64 ? 0 : bits >>> -s;
+		}
+		return moved & this.masks[dir];
+	}
+
+	private long own(final PieceColor color) {
+		return color == PieceColor.BLACK ? this.black : this.white;
+	}
+
+	private long opponent(final PieceColor color) {
+		return color == PieceColor.BLACK ? this.white : this.black;
+	}
+
+	/**
+	 * @return A mask of all cells where the given color may play.
+	 */
+	public long getLegalMask(final PieceColor color) {
+		long me = own(color);
+		long opp = opponent(color);
+		long empty = ~(me | opp) & this.full;
+		long moves = 0;
+		for (int dir = 0; dir < 8; dir++) {
+			long run = shift(me, dir) & opp;
+			long prev;
+			do {
+				prev = run;
+				run |= shift(run, dir) & opp;
+			} while (run != prev);
+			moves |= shift(run, dir) & empty;
+		}
+		return moves;
+	}
+
+	/**
+	 * @return A mask of the discs turned over if color plays at the given
+	 *         cell index, 0 if the move is illegal.
+	 */
+	public long getFlipMask(final PieceColor color, final int cell) {
+		long move = 1L << cell;
+		long me = own(color);
+		long opp = opponent(color);
+		if (((me | opp) & move) != 0) {
+			return 0;
+		}
+		long flips = 0;
+		for (int dir = 0; dir < 8; dir++) {
+			long run = 0;
+			long t = shift(move, dir);
+			while ((t & opp) != 0) {
+				run |= t;
+				t = shift(t, dir);
+			}
+			if ((t & me) != 0) {
+				flips |= run;
+			}
+		}
+		return flips;
+	}
+
+	/** @return The mask of black discs. */
+	public long getBlack() {
+		return this.black;
+	}
+
+	/** @return The mask of white discs. */
+	public long getWhite() {
+		return this.white;
+	}
+
+	@Override
+	public int getWidth() {
+		return this.width;
+	}
+
+	@Override
+	public int getHeight() {
+		return this.height;
+	}
+
+	@Override
+	public PieceColor get(final int x, final int y) {
+		long bit = 1L << (y * this.width + x);
+		if ((this.black & bit) != 0) {
+			return PieceColor.BLACK;
+		} else if ((this.white & bit) != 0) {
+			return PieceColor.WHITE;
+		}
+		return PieceColor.EMPTY;
+	}
+
+	@Override
+	public void set(final int x, final int y, final PieceColor color) {
+		int cell = y * this.width + x;
+		long bit = 1L << cell;
+		this.hash ^= Zobrist.key(cell, get(x, y)) ^ Zobrist.key(cell, color);
+		this.black &= ~bit;
+		this.white &= ~bit;
+		if (color == PieceColor.BLACK) {
+			this.black |= bit;
+		} else if (color == PieceColor.WHITE) {
+			this.white |= bit;
+		}
+	}
+
+	@Override
+	public boolean isLegal(final PieceColor color, final int x, final int y) {
+		return getFlipMask(color, y * this.width + x) != 0;
+	}
+
+	@Override
+	public boolean hasLegalMove(final PieceColor color) {
+		return getLegalMask(color) != 0;
+	}
+
+	@Override
+	public int getFlips(final PieceColor color, final int x, final int y,
+			final int[] cells) {
+		long flips = getFlipMask(color, y * this.width + x);
+		int count = 0;
+		while (flips != 0) {
+			cells[count++] = Long.numberOfTrailingZeros(flips);
+			flips &= flips - 1;
+		}
+		return count;
+	}
+
+	@Override
+	public int getLegalMoves(final PieceColor color, final int[] cells) {
+		long moves = getLegalMask(color);
+		int count = 0;
+		while (moves != 0) {
+			cells[count++] = Long.numberOfTrailingZeros(moves);
+			moves &= moves - 1;
+		}
+		return count;
+	}
+
+	@Override
+	public int count(final PieceColor color) {
+		if (color == PieceColor.EMPTY) {
+			return Long.bitCount(~(this.black | this.white) & this.full);
+		}
+		return Long.bitCount(own(color));
+	}
+
+	@Override
+	public long getHash() {
+		return this.hash;
+	}
+
+	@Override
+	public ReversiBoard copy() {
+		return new BitboardReversiBoard(this);
+	}
+}
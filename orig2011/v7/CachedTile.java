@@ -0,0 +1,90 @@
+package orig2011.v7;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * A game tile which draws another tile once into an image of the tile
+ * size, and from then on only copies that image. The image is compatible
+ * with the screen it is drawn to, so the copy can be done by the graphics
+ * hardware. When the tile is drawn in another size, the image is drawn
+ * again.
+ *
+ * The other tile must always look the same, and anything it draws
+ * outside its own rectangle is cut off, as GameView does.
+ */
+public class CachedTile implements GameTile {
+
+	private final GameTile tile;
+
+	/** The rendered tile, and the size it was rendered in. */
+	private Image image;
+	private int imageWidth;
+	private int imageHeight;
+
+	/**
+	 * Creates a cached version of a tile.
+	 */
+	public CachedTile(final GameTile tile) {
+		this.tile = tile;
+	}
+
+	/** @return The tile which is cached. */
+	public GameTile getTile() {
+		return this.tile;
+	}
+
+	/**
+	 * Draws itself in a given graphics context, position and size.
+	 * 
+	 * @param g
+	 *            graphics context to draw on.
+	 * @param x
+	 *            pixel x coordinate of the tile to be drawn.
+	 * @param y
+	 *            pixel y coordinate of the tile to be drawn.
+	 * @param d
+	 *            size of this object in pixels.
+	 */
+	@Override
+	public synchronized void draw(final Graphics g, final int x, final int y,
+			final Dimension d) {
+		if (d.width <= 0 || d.height <= 0) {
+			return;
+		}
+		if (this.image == null || this.imageWidth != d.width
+				|| this.imageHeight != d.height) {
+			render(g, d);
+		}
+		g.drawImage(this.image, x, y, null);
+	}
+
+	/**
+	 * Draws the tile into a new transparent image of the given size.
+	 */
+	private void render(final Graphics g, final Dimension d) {
+		GraphicsConfiguration config = null;
+		if (g instanceof Graphics2D) {
+			config = ((Graphics2D) g).getDeviceConfiguration();
+		}
+		if (this.image != null) {
+			this.image.flush();
+		}
+		if (config != null) {
+			this.image = config.createCompatibleImage(d.width, d.height,
+					Transparency.TRANSLUCENT);
+		} else {
+			this.image = new BufferedImage(d.width, d.height,
+					BufferedImage.TYPE_INT_ARGB);
+		}
+		this.imageWidth = d.width;
+		this.imageHeight = d.height;
+
+		Graphics ig = this.image.getGraphics();
+		try {
+			this.tile.draw(ig, 0, 0, new Dimension(d));
+		} finally {
+			ig.dispose();
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package orig2011.v7;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The changes made to a game model during one update: the tiles which
+ * changed, each reported once, and the properties which changed, each
+ * with its value from before the update and its latest value.
+ */
+public class ChangeSet {
+
+	private final Object source;
+	private final int height;
+
+	/** Tiles already recorded, by x * height + y. */
+	private final BitSet recorded = new BitSet();
+
+	private int[] xs = new int[16];
+	private int[] ys = new int[16];
+	private int tileCount;
+
+	/** Old and new value of each changed property, in order of change. */
+	private final Map<String, Object[]> properties =
+			new LinkedHashMap<String, Object[]>();
+
+	/**
+	 * Creates an empty change set for a model of the given height.
+	 */
+	ChangeSet(final Object source, final int height) {
+		this.source = source;
+		this.height = height;
+	}
+
+	void addTile(final int x, final int y) {
+		int index = x * this.height + y;
+		if (this.recorded.get(index)) {
+			return;
+		}
+		this.recorded.set(index);
+		if (this.tileCount == this.xs.length) {
+			int[] newXs = new int[this.xs.length * 2];
+			int[] newYs = new int[this.ys.length * 2];
+			System.arraycopy(this.xs, 0, newXs, 0, this.tileCount);
+			System.arraycopy(this.ys, 0, newYs, 0, this.tileCount);
+			this.xs = newXs;
+			this.ys = newYs;
+		}
+		this.xs[this.tileCount] = x;
+		this.ys[this.tileCount] = y;
+		this.tileCount++;
+	}
+
+	void addProperty(final String name, final Object oldValue,
+			final Object newValue) {
+		Object[] values = this.properties.get(name);
+		if (values == null) {
+			this.properties.put(name, new Object[] { oldValue, newValue });
+		} else {
+			values[1] = newValue;
+		}
+	}
+
+	boolean isEmpty() {
+		return this.tileCount == 0 && this.properties.isEmpty();
+	}
+
+	void clear() {
+		for (int i = 0; i < this.tileCount; i++) {
+			this.recorded.clear(this.xs[i] * this.height + this.ys[i]);
+		}
+		this.tileCount = 0;
+		this.properties.clear();
+	}
+
+	/** @return The model which changed. */
+	public Object getSource() {
+		return this.source;
+	}
+
+	/** @return The number of changed tiles. */
+	public int getTileCount() {
+		return this.tileCount;
+	}
+
+	/** @return The x coordinate of the i:th changed tile. */
+	public int getTileX(final int i) {
+		return this.xs[i];
+	}
+
+	/** @return The y coordinate of the i:th changed tile. */
+	public int getTileY(final int i) {
+		return this.ys[i];
+	}
+
+	/** @return The names of the changed properties. */
+	public Set<String> getPropertyNames() {
+		return Collections.unmodifiableSet(this.properties.keySet());
+	}
+
+	/** @return Whether the named property changed. */
+	public boolean hasProperty(final String name) {
+		return this.properties.containsKey(name);
+	}
+
+	/** @return The value of the property before the update, or null. */
+	public Object getOldValue(final String name) {
+		Object[] values = this.properties.get(name);
+		return values == null ? null : values[0];
+	}
+
+	/** @return The latest value of the property, or null. */
+	public Object getNewValue(final String name) {
+		Object[] values = this.properties.get(name);
+		return values == null ? null : values[1];
+	}
+}
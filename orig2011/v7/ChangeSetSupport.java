@@ -0,0 +1,126 @@
+package orig2011.v7;
+
+/**
+ * Collects the changes of a model into a ChangeSet and delivers it to the
+ * change set listeners.
+ *
+ * A model calls begin() and commit() around each update; everything
+ * recorded in between is delivered as one change set when the outermost
+ * commit() is reached. Changes recorded outside of an update are
+ * delivered at once. Nothing is recorded while there are no listeners.
+ */
+public class ChangeSetSupport {
+
+	private static final IChangeSetListener[] NO_LISTENERS =
+			new IChangeSetListener[0];
+
+	private volatile IChangeSetListener[] listeners = NO_LISTENERS;
+
+	private final ChangeSet changes;
+
+	/** Number of nested updates in progress. */
+	private int depth;
+
+	/**
+	 * Creates the support for a model of the given height.
+	 */
+	public ChangeSetSupport(final Object source, final int height) {
+		this.changes = new ChangeSet(source, height);
+	}
+
+	/**
+	 * Add a listener to be notified of change sets.
+	 */
+	public synchronized void addChangeSetListener(
+			final IChangeSetListener listener) {
+		if (listener == null) {
+			return;
+		}
+		IChangeSetListener[] old = this.listeners;
+		IChangeSetListener[] updated = new IChangeSetListener[old.length + 1];
+		System.arraycopy(old, 0, updated, 0, old.length);
+		updated[old.length] = listener;
+		this.listeners = updated;
+	}
+
+	/**
+	 * Remove a listener. If it was added more than once, one of the
+	 * registrations is removed.
+	 */
+	public synchronized void removeChangeSetListener(
+			final IChangeSetListener listener) {
+		IChangeSetListener[] old = this.listeners;
+		for (int i = 0; i < old.length; i++) {
+			if (old[i] == listener) {
+				IChangeSetListener[] updated =
+						new IChangeSetListener[old.length - 1];
+				System.arraycopy(old, 0, updated, 0, i);
+				System.arraycopy(old, i + 1, updated, i, old.length - i - 1);
+				this.listeners = updated;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Starts collecting changes. Must be paired with commit(), preferably in
+	 * a finally block.
+	 */
+	public void begin() {
+		this.depth++;
+	}
+
+	/**
+	 * Ends an update, delivering the collected changes if this ends the
+	 * outermost update.
+	 */
+	public void commit() {
+		this.depth--;
+		if (this.depth == 0) {
+			deliver();
+		}
+	}
+
+	/**
+	 * Record a changed tile.
+	 */
+	public void tileChanged(final int x, final int y) {
+		if (this.listeners.length == 0) {
+			return;
+		}
+		this.changes.addTile(x, y);
+		if (this.depth == 0) {
+			deliver();
+		}
+	}
+
+	/**
+	 * Record a changed property. Equal values are ignored, as by
+	 * PropertyChangeSupport.
+	 */
+	public void propertyChanged(final String name, final Object oldValue,
+			final Object newValue) {
+		if (this.listeners.length == 0
+				|| (oldValue != null && oldValue.equals(newValue))) {
+			return;
+		}
+		this.changes.addProperty(name, oldValue, newValue);
+		if (this.depth == 0) {
+			deliver();
+		}
+	}
+
+	private void deliver() {
+		if (this.changes.isEmpty()) {
+			return;
+		}
+		try {
+			IChangeSetListener[] current = this.listeners;
+			for (int i = 0; i < current.length; i++) {
+				current[i].modelChanged(this.changes);
+			}
+		} finally {
+			this.changes.clear();
+		}
+	}
+}
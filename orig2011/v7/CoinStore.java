@@ -0,0 +1,129 @@
+package orig2011.v7;
+
+import java.util.BitSet;
+
+/**
+ * The coins of GoldModel: a bit per cell telling whether it holds a coin,
+ * and a ring of the coins in the order they were placed.
+ *
+ * Testing a cell, adding a coin and taking the oldest coin take constant
+ * time. A coin removed out of order is only marked as gone in the ring
+ * (a tombstone) and skipped when it reaches the head. Cells are indexed
+ * x * height + y.
+ */
+class CoinStore {
+
+	/** Marks a ring slot whose coin has been removed. */
+	private static final int TOMBSTONE = -1;
+
+	private final int height;
+
+	/** The cells holding a coin. */
+	private final BitSet cells;
+
+	/** The ring slot of the coin in each cell, valid while it is set. */
+	private final int[] slots;
+
+	/** Cell indices in placing order, or TOMBSTONE. */
+	private int[] ring;
+	private int head;
+	private int used;
+
+	private int size;
+
+	/**
+	 * Creates an empty store for a board of the given size, with room for
+	 * the given number of coins before the ring has to grow.
+	 */
+	CoinStore(final int width, final int height, final int capacity) {
+		this.height = height;
+		this.cells = new BitSet(width * height);
+		this.slots = new int[width * height];
+		this.ring = new int[Math.max(1, capacity)];
+	}
+
+	/** @return Whether the cell holds a coin. */
+	boolean contains(final int x, final int y) {
+		return this.cells.get(x * this.height + y);
+	}
+
+	/**
+	 * Adds a coin to an empty cell, as the newest coin.
+	 */
+	void add(final int x, final int y) {
+		int cell = x * this.height + y;
+		if (this.cells.get(cell)) {
+			throw new IllegalStateException("Cell already holds a coin: " + x
+					+ "," + y);
+		}
+		if (this.used == this.ring.length) {
+			grow();
+		}
+		int slot = (this.head + this.used) % this.ring.length;
+		this.ring[slot] = cell;
+		this.used++;
+		this.slots[cell] = slot;
+		this.cells.set(cell);
+		this.size++;
+	}
+
+	/**
+	 * Removes the coin in a cell, if any.
+	 *
+	 * @return true if there was a coin.
+	 */
+	boolean remove(final int x, final int y) {
+		int cell = x * this.height + y;
+		if (!this.cells.get(cell)) {
+			return false;
+		}
+		this.cells.clear(cell);
+		this.ring[this.slots[cell]] = TOMBSTONE;
+		this.size--;
+		return true;
+	}
+
+	/**
+	 * Removes the oldest coin.
+	 *
+	 * @return Its cell index, or -1 if there are no coins.
+	 */
+	int removeOldest() {
+		while (this.used > 0) {
+			int cell = this.ring[this.head];
+			this.head = (this.head + 1) % this.ring.length;
+			this.used--;
+			if (cell != TOMBSTONE) {
+				this.cells.clear(cell);
+				this.size--;
+				return cell;
+			}
+		}
+		return -1;
+	}
+
+	/** @return The number of coins. */
+	int size() {
+		return this.size;
+	}
+
+	boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Doubles the ring, moving the coins to the start of the new one.
+	 */
+	private void grow() {
+		int[] larger = new int[this.ring.length * 2];
+		for (int i = 0; i < this.used; i++) {
+			int cell = this.ring[(this.head + i) % this.ring.length];
+			larger[i] = cell;
+			if (cell != TOMBSTONE) {
+				this.slots[cell] = i;
+			}
+		}
+		this.ring = larger;
+		this.head = 0;
+	}
+}
@@ -0,0 +1,858 @@
+package orig2011.v7;
+
+import orig2011.v7.ReversiModel.BoardType;
+import orig2011.v7.ReversiModel.PieceColor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exact solver for Reversi endgames: searches every line to the end of the
+ * game and finds the move giving the best final disc difference when both
+ * sides play perfectly.
+ *
+ * Positions are kept as two bit masks, so only boards of at most 64 cells
+ * can be solved. Moves are ordered depending on how many cells are empty:
+ * <ul>
+ * <li>With many empties, fastest first: the moves leaving the opponent the
+ * fewest replies are tried first, since they give the smallest subtrees
+ * and are usually the best.</li>
+ * <li>With few empties, by parity: the empty cells of each quadrant form a
+ * region, and regions with an odd number of empties are played first,
+ * since the side playing last in a region tends to gain. No move list is
+ * generated, every empty cell is simply tried.</li>
+ * <li>The last two empties are solved by code of their own without move
+ * lists or loops.</li>
+ * </ul>
+ * The moves at the root can be searched on several threads. The first
+ * move is searched alone to get a bound, then the others in parallel,
+ * each against the best score found when it starts.
+ *
+ * The score is the difference between the discs of the side to move and
+ * those of its opponent at the end of the game, empty cells not counted,
+ * as in ReversiSearch. An instance must not be used by more than one
+ * thread at a time.
+ */
+public class EndgameSolver {
+
+	/** Below this many empties, moves are ordered by parity. */
+	private static final int PARITY_EMPTIES = 7;
+
+	/** From this many empties on, results are kept in the table. */
+	private static final int TABLE_EMPTIES = 8;
+
+	/** Log2 of the default number of transposition table entries. */
+	private static final int DEFAULT_TABLE_BITS = 20;
+
+	/** More than any disc difference. */
+	private static final int INFINITY = BitboardReversiBoard.MAX_CELLS + 1;
+
+	private final int width;
+	private final int height;
+
+	/** Mask of all cells on the board. */
+	private final long full;
+
+	/**
+	 * The cells reached from each cell in each direction, indexed
+	 * cell * 8 + direction. Directions 0-3 go towards higher cell indices,
+	 * 4-7 towards lower.
+	 */
+	private final long[] rays;
+
+	/** Shift distance of the four directions towards higher indices. */
+	private final int[] shifts;
+
+	/**
+	 * Cells a bit may land on after shifting towards higher and lower
+	 * indices in each of the four directions.
+	 */
+	private final long[] upMasks;
+	private final long[] downMasks;
+
+	/** The longest run of discs which can be turned in one direction. */
+	private final int maxRun;
+
+	/** The cells of each quadrant of the board. */
+	private final long[] regions;
+
+	private final long corners;
+
+	/** The largest number of plies in a game, passes included. */
+	private final int maxPlies;
+
+	/** Results shared by all threads, may be null. */
+	private final TranspositionTable table;
+
+	/** Searches the root moves after the first, null on a single thread. */
+	private final ForkJoinPool pool;
+	private final int threads;
+
+	private long nodes;
+	private int score;
+	private long elapsedNanos;
+
+	/**
+	 * Creates a solver for boards of the given size searching on the given
+	 * number of threads, with a transposition table of its own.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the board has more than 64 cells.
+	 */
+	public EndgameSolver(final int width, final int height, final int threads) {
+		this(width, height, threads, new TranspositionTable(DEFAULT_TABLE_BITS));
+	}
+
+	/**
+	 * Creates a solver for boards of the given size searching on the given
+	 * number of threads.
+	 *
+	 * @param table
+	 *            The table shared by all threads, or null to solve without
+	 *            one. Its entries are not compatible with those of
+	 *            ReversiSearch, so the table can't be shared with it.
+	 * @throws IllegalArgumentException
+	 *             if the board has more than 64 cells.
+	 */
+	public EndgameSolver(final int width, final int height, final int threads,
+			final TranspositionTable table) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Invalid thread count: "
+					+ threads);
+		}
+		if (width <= 0 || height <= 0
+				|| width * height > BitboardReversiBoard.MAX_CELLS) {
+			throw new IllegalArgumentException("Can only solve boards of at most "
+					+ BitboardReversiBoard.MAX_CELLS + " cells, got " + width
+					+ "x" + height);
+		}
+		this.width = width;
+		this.height = height;
+		int cells = width * height;
+		this.full = cells == 64 ? -1L : (1L << cells) - 1;
+
+		// EAST, SOUTHEAST, SOUTH, SOUTHWEST, then their opposites.
+		int[] dx = { 1, 1, 0, -1, -1, -1, 0, 1 };
+		int[] dy = { 0, 1, 1, 1, 0, -1, -1, -1 };
+		this.rays = new long[cells * 8];
+		for (int cell = 0; cell < cells; cell++) {
+			for (int dir = 0; dir < 8; dir++) {
+				int x = cell % width + dx[dir];
+				int y = cell / width + dy[dir];
+				long ray = 0;
+				while (x >= 0 && x < width && y >= 0 && y < height) {
+					ray |= 1L << (y * width + x);
+					x += dx[dir];
+					y += dy[dir];
+				}
+				this.rays[cell * 8 + dir] = ray;
+			}
+		}
+
+		long notFirstColumn = 0;
+		long notLastColumn = 0;
+		for (int cell = 0; cell < cells; cell++) {
+			if (cell % width != 0) {
+				notFirstColumn |= 1L << cell;
+			}
+			if (cell % width != width - 1) {
+				notLastColumn |= 1L << cell;
+			}
+		}
+		this.shifts = new int[] { 1, width + 1, width, width - 1 };
+		this.upMasks = new long[] { notFirstColumn, notFirstColumn, this.full,
+				notLastColumn };
+		this.downMasks = new long[] { notLastColumn, notLastColumn, this.full,
+				notFirstColumn };
+		for (int dir = 0; dir < 4; dir++) {
+			if (this.shifts[dir] >= 64) {
+				// Java shifts by the distance modulo 64; no bit can land.
+				this.upMasks[dir] = 0;
+				this.downMasks[dir] = 0;
+			}
+		}
+		this.maxRun = Math.max(width, height) - 2;
+
+		this.regions = new long[4];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int region = (x < width / 2 ? 0 : 1) + (y < height / 2 ? 0 : 2);
+				this.regions[region] |= 1L << (y * width + x);
+			}
+		}
+		this.corners = 1L | 1L << (width - 1) | 1L << ((height - 1) * width)
+				| 1L << (height * width - 1);
+		this.maxPlies = 2 * width * height + 2;
+		this.threads = threads;
+		this.table = table;
+		this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+	}
+
+	/**
+	 * Solves the position for the given color.
+	 *
+	 * @param board
+	 *            The position to solve. It is not modified.
+	 * @param color
+	 *            The side to move.
+	 * @return The cell index of the best move, or -1 if the side has to pass
+	 *         or the game is over. The score is available from getScore()
+	 *         in all cases.
+	 */
+	public int solve(final ReversiBoard board, final PieceColor color) {
+		if (board.getWidth() != this.width
+				|| board.getHeight() != this.height) {
+			throw new IllegalArgumentException("Solver is for " + this.width
+					+ "x" + this.height + " boards");
+		}
+		long start = System.nanoTime();
+		if (this.table != null) {
+			this.table.newSearch();
+		}
+		long me = mask(board, color);
+		long opp = mask(board, PieceColor.opposite(color));
+		Worker main = new Worker();
+		int bestMove = -1;
+
+		long legal = legalMask(me, opp);
+		if (legal == 0) {
+			this.score = main.solve(me, opp, -INFINITY, INFINITY, false, 0);
+			this.nodes = main.nodes;
+			this.elapsedNanos = System.nanoTime() - start;
+			return bestMove;
+		}
+
+		int count = main.orderMoves(me, opp, legal, -1, 0);
+		int[] moves = main.moves[0];
+		long[] flips = main.flips[0];
+
+		// The first move alone gives the bound for the others.
+		bestMove = moves[0];
+		int alpha = -main.solve(opp & ~flips[0], me | flips[0] | 1L << moves[0],
+				-INFINITY, INFINITY, false, 1);
+		this.nodes = 0;
+
+		if (this.pool == null || count == 1) {
+			for (int i = 1; i < count; i++) {
+				int value = -main.solve(opp & ~flips[i],
+						me | flips[i] | 1L << moves[i], -INFINITY, -alpha,
+						false, 1);
+				if (value > alpha) {
+					alpha = value;
+					bestMove = moves[i];
+				}
+			}
+		} else {
+			AtomicInteger bound = new AtomicInteger(alpha);
+			List<RootMove> tasks = new ArrayList<RootMove>(count - 1);
+			List<Future<Integer>> results = new ArrayList<Future<Integer>>(
+					count - 1);
+			for (int i = 1; i < count; i++) {
+				RootMove task = new RootMove(me | flips[i] | 1L << moves[i],
+						opp & ~flips[i], moves[i], bound);
+				tasks.add(task);
+				results.add(this.pool.submit(task));
+			}
+			for (int i = 0; i < tasks.size(); i++) {
+				RootMove task = tasks.get(i);
+				int value = join(results.get(i));
+				this.nodes += task.worker.nodes;
+				// Values not above the bound the move was searched against
+				// are only upper bounds.
+				if (value > task.alpha && value > alpha) {
+					alpha = value;
+					bestMove = task.cell;
+				}
+			}
+		}
+
+		this.nodes += main.nodes;
+		this.score = alpha;
+		this.elapsedNanos = System.nanoTime() - start;
+		return bestMove;
+	}
+
+	private static int join(final Future<Integer> result) {
+		try {
+			return result.get().intValue();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while solving", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Solver thread failed",
+					e.getCause());
+		}
+	}
+
+	/**
+	 * @return The discs of the given color as a mask of cell indices.
+	 */
+	private static long mask(final ReversiBoard board, final PieceColor color) {
+		if (board instanceof BitboardReversiBoard) {
+			BitboardReversiBoard bits = (BitboardReversiBoard) board;
+			return color == PieceColor.BLACK ? bits.getBlack() : bits.getWhite();
+		}
+		long mask = 0;
+		for (int y = 0; y < board.getHeight(); y++) {
+			for (int x = 0; x < board.getWidth(); x++) {
+				if (board.get(x, y) == color) {
+					mask |= 1L << (y * board.getWidth() + x);
+				}
+			}
+		}
+		return mask;
+	}
+
+	/**
+	 * @return A mask of the cells where the side owning me may play.
+	 */
+	private long legalMask(final long me, final long opp) {
+		long moves = 0;
+		for (int dir = 0; dir < 4; dir++) {
+			int s = this.shifts[dir];
+			long upOpp = this.upMasks[dir] & opp;
+			long downOpp = this.downMasks[dir] & opp;
+			long up = (me << s) & upOpp;
+			long down = (me >>> s) & downOpp;
+			for (int i = 1; i < this.maxRun; i++) {
+				up |= (up << s) & upOpp;
+				down |= (down >>> s) & downOpp;
+			}
+			moves |= ((up << s) & this.upMasks[dir])
+					| ((down >>> s) & this.downMasks[dir]);
+		}
+		return moves & ~(me | opp);
+	}
+
+	/**
+	 * Finds the discs turned over when the side owning me plays at the
+	 * cell, which must be empty. In every direction, the nearest cell of
+	 * the ray not holding an opponent disc decides: if it holds one of the
+	 * side's own discs, the opponent discs before it are turned.
+	 *
+	 * @return A mask of the discs turned over, 0 if the move is illegal.
+	 */
+	private long flipMask(final long me, final long opp, final int cell) {
+		long flips = 0;
+		int base = cell * 8;
+		for (int dir = 0; dir < 4; dir++) {
+			long ray = this.rays[base + dir];
+			long blockers = ray & ~opp;
+			long first = blockers & -blockers;
+			if ((first & me) != 0) {
+				flips |= ray & (first - 1);
+			}
+		}
+		for (int dir = 4; dir < 8; dir++) {
+			long ray = this.rays[base + dir];
+			long blockers = ray & ~opp;
+			long first = Long.highestOneBit(blockers);
+			if ((first & me) != 0) {
+				flips |= ray & ~((first << 1) - 1);
+			}
+		}
+		return flips;
+	}
+
+	/**
+	 * @return A hash of the position with the side owning me to move. The
+	 *         masks differ between positions, so mixing them suffices.
+	 */
+	private static long hash(final long me, final long opp) {
+		long h = me * 0x9E3779B97F4A7C15L
+				^ Long.rotateLeft(opp * 0xC2B2AE3D27D4EB4FL, 31);
+		h ^= h >>> 29;
+		h *= 0xBF58476D1CE4E5B9L;
+		return h ^ (h >>> 32);
+	}
+
+	/**
+	 * @return The regions holding an odd number of the empty cells.
+	 */
+	private long oddRegions(final long empty) {
+		long odd = 0;
+		for (long region : this.regions) {
+			if ((Long.bitCount(empty & region) & 1) != 0) {
+				odd |= region;
+			}
+		}
+		return odd;
+	}
+
+	/**
+	 * Searches one root move after the first one, on a pool thread.
+	 */
+	private final class RootMove implements Callable<Integer> {
+		private final long me;
+		private final long opp;
+		private final int cell;
+		private final AtomicInteger bound;
+		private final Worker worker = new Worker();
+
+		/** The bound the move was searched against. */
+		private int alpha;
+
+		/**
+		 * @param me
+		 *            The discs of the side which made the move.
+		 */
+		RootMove(final long me, final long opp, final int cell,
+				final AtomicInteger bound) {
+			this.me = me;
+			this.opp = opp;
+			this.cell = cell;
+			this.bound = bound;
+		}
+
+		@Override
+		public Integer call() {
+			this.alpha = this.bound.get();
+			int value = -this.worker.solve(this.opp, this.me, -INFINITY,
+					-this.alpha, false, 1);
+			int current = this.bound.get();
+			while (value > current
+					&& !this.bound.compareAndSet(current, value)) {
+				current = this.bound.get();
+			}
+			return Integer.valueOf(value);
+		}
+	}
+
+	/**
+	 * The search of one thread, with its own move lists and node count.
+	 */
+	private final class Worker {
+		private long nodes;
+
+		/** Move lists of the fastest first plies, allocated on demand. */
+		private final int[][] moves = new int[EndgameSolver.this.maxPlies][];
+		private final long[][] flips = new long[EndgameSolver.this.maxPlies][];
+		private final int[][] keys = new int[EndgameSolver.this.maxPlies][];
+
+		/**
+		 * Solves a position for the side owning me.
+		 *
+		 * @param passed
+		 *            Whether the opponent passed on the previous ply.
+		 */
+		int solve(final long me, final long opp, final int alpha,
+				final int beta, final boolean passed, final int ply) {
+			long empty = ~(me | opp) & EndgameSolver.this.full;
+			int n = Long.bitCount(empty);
+			if (n == 0) {
+				this.nodes++;
+				return Long.bitCount(me) - Long.bitCount(opp);
+			} else if (n == 1) {
+				return solve1(me, opp, empty);
+			} else if (n == 2) {
+				return solve2(me, opp, alpha, beta, empty);
+			} else if (n < PARITY_EMPTIES) {
+				return solveParity(me, opp, alpha, beta, passed, empty, ply);
+			}
+			return solveFastest(me, opp, alpha, beta, passed, empty, ply);
+		}
+
+		/**
+		 * Solves a position with one empty cell: the side to move plays
+		 * it, or else the opponent, or else nobody.
+		 */
+		private int solve1(final long me, final long opp, final long empty) {
+			this.nodes++;
+			int cell = Long.numberOfTrailingZeros(empty);
+			int diff = Long.bitCount(me) - Long.bitCount(opp);
+			long f = flipMask(me, opp, cell);
+			if (f != 0) {
+				return diff + 2 * Long.bitCount(f) + 1;
+			}
+			f = flipMask(opp, me, cell);
+			if (f != 0) {
+				return diff - 2 * Long.bitCount(f) - 1;
+			}
+			return diff;
+		}
+
+		/**
+		 * Solves a position with two empty cells. If the side to move can
+		 * play neither, the opponent's replies are minimised instead.
+		 */
+		private int solve2(final long me, final long opp, final int alpha,
+				final int beta, final long empty) {
+			this.nodes++;
+			long first = empty & -empty;
+			long second = empty & ~first;
+			int c1 = Long.numberOfTrailingZeros(first);
+			int c2 = Long.numberOfTrailingZeros(second);
+
+			int best = -INFINITY;
+			long f = flipMask(me, opp, c1);
+			if (f != 0) {
+				best = -solve1(opp & ~f, me | f | first, second);
+				if (best >= beta) {
+					return best;
+				}
+			}
+			f = flipMask(me, opp, c2);
+			if (f != 0) {
+				return Math.max(best, -solve1(opp & ~f, me | f | second, first));
+			}
+			if (best > -INFINITY) {
+				return best;
+			}
+
+			// The side to move passes.
+			int worst = INFINITY;
+			f = flipMask(opp, me, c1);
+			if (f != 0) {
+				worst = solve1(me & ~f, opp | f | first, second);
+				if (worst <= alpha) {
+					return worst;
+				}
+			}
+			f = flipMask(opp, me, c2);
+			if (f != 0) {
+				return Math.min(worst, solve1(me & ~f, opp | f | second, first));
+			}
+			if (worst < INFINITY) {
+				return worst;
+			}
+			return Long.bitCount(me) - Long.bitCount(opp);
+		}
+
+		/**
+		 * Solves a position with few empties, trying the empty cells of
+		 * odd regions first.
+		 */
+		private int solveParity(final long me, final long opp, int alpha,
+				final int beta, final boolean passed, final long empty,
+				final int ply) {
+			this.nodes++;
+			long odd = oddRegions(empty);
+			int best = -INFINITY;
+			for (int pass = 0; pass < 2; pass++) {
+				long cells = empty & (pass == 0 ? odd : ~odd);
+				while (cells != 0) {
+					long bit = cells & -cells;
+					cells &= cells - 1;
+					long f = flipMask(me, opp,
+							Long.numberOfTrailingZeros(bit));
+					if (f == 0) {
+						continue;
+					}
+					int value = -solve(opp & ~f, me | f | bit, -beta, -alpha,
+							false, ply + 1);
+					if (value > best) {
+						best = value;
+						if (value > alpha) {
+							alpha = value;
+							if (alpha >= beta) {
+								return best;
+							}
+						}
+					}
+				}
+			}
+			if (best == -INFINITY) {
+				if (passed) {
+					return Long.bitCount(me) - Long.bitCount(opp);
+				}
+				return -solve(opp, me, -beta, -alpha, true, ply + 1);
+			}
+			return best;
+		}
+
+		/**
+		 * Solves a position with many empties, trying the moves which
+		 * leave the opponent the fewest replies first.
+		 */
+		private int solveFastest(final long me, final long opp, int alpha,
+				int beta, final boolean passed, final long empty,
+				final int ply) {
+			this.nodes++;
+			long legal = legalMask(me, opp);
+			if (legal == 0) {
+				if (passed) {
+					return Long.bitCount(me) - Long.bitCount(opp);
+				}
+				return -solve(opp, me, -beta, -alpha, true, ply + 1);
+			}
+
+			TranspositionTable table = EndgameSolver.this.table;
+			int n = Long.bitCount(empty);
+			boolean useTable = table != null && n >= TABLE_EMPTIES;
+			int alphaOrig = alpha;
+			int betaOrig = beta;
+			long hash = 0;
+			int tableMove = -1;
+			if (useTable) {
+				hash = hash(me, opp);
+				long entry = table.probe(hash);
+				if (entry != 0) {
+					int move = TranspositionTable.getMove(entry);
+					if (move != TranspositionTable.NO_MOVE) {
+						tableMove = move;
+					}
+					// Every path to a position fills the same cells, so
+					// the stored result is always deep enough.
+					int stored = TranspositionTable.getScore(entry);
+					int flag = TranspositionTable.getFlag(entry);
+					if (flag == TranspositionTable.EXACT) {
+						return stored;
+					} else if (flag == TranspositionTable.LOWER) {
+						alpha = Math.max(alpha, stored);
+					} else {
+						beta = Math.min(beta, stored);
+					}
+					if (alpha >= beta) {
+						return stored;
+					}
+				}
+			}
+
+			int count = orderMoves(me, opp, legal, tableMove, ply);
+			int[] cells = this.moves[ply];
+			long[] turned = this.flips[ply];
+			int best = -INFINITY;
+			int bestMove = -1;
+			for (int i = 0; i < count; i++) {
+				long f = turned[i];
+				int value = -solve(opp & ~f, me | f | 1L << cells[i], -beta,
+						-alpha, false, ply + 1);
+				if (value > best) {
+					best = value;
+					bestMove = cells[i];
+					if (value > alpha) {
+						alpha = value;
+						if (alpha >= beta) {
+							break;
+						}
+					}
+				}
+			}
+
+			if (useTable) {
+				int flag;
+				if (best <= alphaOrig) {
+					flag = TranspositionTable.UPPER;
+				} else if (best >= betaOrig) {
+					flag = TranspositionTable.LOWER;
+				} else {
+					flag = TranspositionTable.EXACT;
+				}
+				table.store(hash, n, flag, best, bestMove);
+			}
+			return best;
+		}
+
+		/**
+		 * Fills the move list of the ply with the legal moves and their
+		 * flips: the given first move, then fewest opponent replies first.
+		 * Ties go to corners, then to moves into odd regions.
+		 *
+		 * @return The number of moves.
+		 */
+		int orderMoves(final long me, final long opp, long legal,
+				final int firstMove, final int ply) {
+			if (this.moves[ply] == null) {
+				int cells = EndgameSolver.this.width * EndgameSolver.this.height;
+				this.moves[ply] = new int[cells];
+				this.flips[ply] = new long[cells];
+				this.keys[ply] = new int[cells];
+			}
+			int[] cells = this.moves[ply];
+			long[] turned = this.flips[ply];
+			int[] order = this.keys[ply];
+			long odd = oddRegions(~(me | opp) & EndgameSolver.this.full);
+			int count = 0;
+			while (legal != 0) {
+				long bit = legal & -legal;
+				legal &= legal - 1;
+				int cell = Long.numberOfTrailingZeros(bit);
+				long f = flipMask(me, opp, cell);
+				int replies = Long.bitCount(legalMask(opp & ~f, me | f | bit));
+				int key = replies << 2
+						| ((EndgameSolver.this.corners & bit) != 0 ? 0 : 2)
+						| ((odd & bit) != 0 ? 0 : 1);
+				if (cell == firstMove) {
+					key = -1;
+				}
+				int j = count;
+				while (j > 0 && order[j - 1] > key) {
+					cells[j] = cells[j - 1];
+					turned[j] = turned[j - 1];
+					order[j] = order[j - 1];
+					j--;
+				}
+				cells[j] = cell;
+				turned[j] = f;
+				order[j] = key;
+				count++;
+			}
+			return count;
+		}
+	}
+
+	/** @return The number of threads solving. */
+	public int getThreads() {
+		return this.threads;
+	}
+
+	/** @return The number of positions visited by the last solve. */
+	public long getNodes() {
+		return this.nodes;
+	}
+
+	/**
+	 * @return The final disc difference of the last solved position under
+	 *         perfect play, from the point of view of the side to move.
+	 */
+	public int getScore() {
+		return this.score;
+	}
+
+	/** @return The duration of the last solve in nanoseconds. */
+	public long getElapsedNanos() {
+		return this.elapsedNanos;
+	}
+
+	/** @return The node throughput of the last solve. */
+	public long getNodesPerSecond() {
+		if (this.elapsedNanos <= 0) {
+			return 0;
+		}
+		return this.nodes * 1000000000L / this.elapsedNanos;
+	}
+
+	/**
+	 * Stops the solver threads. The solver can't be used afterwards.
+	 */
+	public void shutdown() {
+		if (this.pool != null) {
+			this.pool.shutdown();
+		}
+	}
+
+	/**
+	 * Solves positions reached by random play from the starting position,
+	 * on one thread and on several, and reports the time and nodes of
+	 * each.
+	 *
+	 * Usage: EndgameSolver [empties] [positions] [threads] [seed] [WxH]
+	 */
+	public static void main(final String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		int empties = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int positions = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		int threads = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+		GameConfig config = args.length > 4 ? GameConfig.parse(args[4])
+				: new GameConfig(8, 8);
+
+		EndgameSolver single = new EndgameSolver(config.getWidth(),
+				config.getHeight(), 1);
+		EndgameSolver parallel = new EndgameSolver(config.getWidth(),
+				config.getHeight(), threads);
+		Random random = new Random(seed);
+
+		// Warm up the JIT so the first position isn't penalised.
+		for (int i = 0; i < 20; i++) {
+			Object[] position = randomPosition(config,
+					Math.min(empties, 14), random);
+			single.solve((ReversiBoard) position[0], (PieceColor) position[1]);
+			parallel.solve((ReversiBoard) position[0],
+					(PieceColor) position[1]);
+		}
+
+		long singleNodes = 0;
+		long singleNanos = 0;
+		long parallelNodes = 0;
+		long parallelNanos = 0;
+		boolean ok = true;
+		for (int i = 0; i < positions; i++) {
+			Object[] position = randomPosition(config, empties, random);
+			ReversiBoard board = (ReversiBoard) position[0];
+			PieceColor color = (PieceColor) position[1];
+			int move = single.solve(board, color);
+			parallel.solve(board, color);
+			boolean agree = single.getScore() == parallel.getScore();
+			ok &= agree;
+			singleNodes += single.getNodes();
+			singleNanos += single.getElapsedNanos();
+			parallelNodes += parallel.getNodes();
+			parallelNanos += parallel.getElapsedNanos();
+			System.out.println(String.format(
+					"#%d %d empties, %s to move: %s, score %+d | 1 thread "
+							+ "%d nodes in %.1f ms | %d thread(s) %d nodes "
+							+ "in %.1f ms%s",
+					i, empties, color, move < 0 ? "pass" : "("
+							+ move % config.getWidth() + ","
+							+ move / config.getWidth() + ")",
+					single.getScore(), single.getNodes(),
+					single.getElapsedNanos() / 1e6, threads,
+					parallel.getNodes(), parallel.getElapsedNanos() / 1e6,
+					agree ? "" : " MISMATCH, parallel score "
+							+ parallel.getScore()));
+		}
+		single.shutdown();
+		parallel.shutdown();
+
+		System.out.println(String.format(
+				"1 thread: %d nodes in %d ms, %d nodes/s", singleNodes,
+				singleNanos / 1000000,
+				singleNodes * 1000000000L / Math.max(1, singleNanos)));
+		System.out.println(String.format(
+				"%d thread(s): %d nodes in %d ms, %d nodes/s, speedup %.2f",
+				threads, parallelNodes, parallelNanos / 1000000,
+				parallelNodes * 1000000000L / Math.max(1, parallelNanos),
+				(double) singleNanos / Math.max(1, parallelNanos)));
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Plays random moves from the starting position until the given number
+	 * of cells is empty, starting over if the game ends before that.
+	 *
+	 * @return The board and the color to move.
+	 */
+	private static Object[] randomPosition(final GameConfig config,
+			final int empties, final Random random) {
+		int[] cells = new int[config.getWidth() * config.getHeight()];
+		int[] flips = new int[cells.length];
+		while (true) {
+			ReversiBoard board = new ReversiModel(BoardType.BITBOARD, config)
+					.copyBoard();
+			PieceColor color = PieceColor.BLACK;
+			while (board.count(PieceColor.EMPTY) > empties) {
+				int count = board.getLegalMoves(color, cells);
+				if (count == 0) {
+					color = PieceColor.opposite(color);
+					if (!board.hasLegalMove(color)) {
+						break;
+					}
+					continue;
+				}
+				int cell = cells[random.nextInt(count)];
+				int x = cell % board.getWidth();
+				int y = cell / board.getWidth();
+				int turned = board.getFlips(color, x, y, flips);
+				board.set(x, y, color);
+				for (int i = 0; i < turned; i++) {
+					board.set(flips[i] % board.getWidth(),
+							flips[i] / board.getWidth(), color);
+				}
+				color = PieceColor.opposite(color);
+			}
+			if (board.count(PieceColor.EMPTY) == empties) {
+				return new Object[] { board, color };
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package orig2011.v7;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The free cells of a board, kept densely packed in an array so that a
+ * uniformly random free cell can be picked in constant time. Every cell
+ * also knows its place in the array, so adding and removing a cell take
+ * constant time too. Cells are indexed x * height + y.
+ */
+class FreeCellSet {
+
+	/** The free cells, in no particular order; the first size are used. */
+	private final int[] cells;
+
+	/** The place of each cell in cells, or -1 if it isn't free. */
+	private final int[] places;
+
+	private int size;
+
+	/**
+	 * Creates an empty set for a board with the given number of cells.
+	 */
+	FreeCellSet(final int cellCount) {
+		this.cells = new int[cellCount];
+		this.places = new int[cellCount];
+		Arrays.fill(this.places, -1);
+	}
+
+	boolean contains(final int cell) {
+		return this.places[cell] >= 0;
+	}
+
+	/**
+	 * Marks a cell as free. Does nothing if it already is.
+	 */
+	void add(final int cell) {
+		if (this.places[cell] >= 0) {
+			return;
+		}
+		this.cells[this.size] = cell;
+		this.places[cell] = this.size;
+		this.size++;
+	}
+
+	/**
+	 * Marks a cell as taken, moving the last free cell into its place.
+	 * Does nothing if it isn't free.
+	 */
+	void remove(final int cell) {
+		int place = this.places[cell];
+		if (place < 0) {
+			return;
+		}
+		this.size--;
+		int last = this.cells[this.size];
+		this.cells[place] = last;
+		this.places[last] = place;
+		this.places[cell] = -1;
+	}
+
+	/**
+	 * Picks one of the free cells, each with the same probability.
+	 *
+	 * @return The cell, or -1 if no cell is free.
+	 */
+	int sample(final Random random) {
+		if (this.size == 0) {
+			return -1;
+		}
+		return this.cells[random.nextInt(this.size)];
+	}
+
+	/** @return The number of free cells. */
+	int size() {
+		return this.size;
+	}
+}
@@ -4,14 +4,21 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
 
 /**
  * This panel is meant to be the base of a window or applet. It will add a new
  * GameView with a corresponding GameController to itself. It will also provide
  * a gui for choosing a new game. The list of games will be aquired from
  * a GameFactory.
+ * <p>
+ * When the system property orig2011.recordDir names a directory, every
+ * game started is recorded into it, for replaying with GameReplayer.
  */
 public class GUIView extends JPanel {
+	/** System property naming the directory to record games into. */
+	private static final String RECORD_DIR_PROPERTY = "orig2011.recordDir";
+
 	/** The "Start Game" button */
 	private final JButton startGameButton;
 
@@ -30,6 +37,9 @@ public class GUIView extends JPanel {
 	/** This is the factory which creates GameModels for us */
 	private final IGameFactory gameFactory;
 
+	/** Records the current or last game, or null */
+	private GameRecorder recorder;
+
 	/**
 	 * Create a new GUIView. This will create a GameView and a GameController.
 	 * @param factory The factory to use for creating games.
@@ -80,6 +90,20 @@ public class GUIView extends JPanel {
 		return this.gameController;
 	}
 
+	/**
+	 * Tells the user if the record of the last game couldn't be saved. Its
+	 * recording has ended once the game is over or stopped.
+	 */
+	private void reportSaveError() {
+		if (this.recorder != null && this.recorder.getSaveError() != null) {
+			JOptionPane.showMessageDialog(this,
+					"Could not save the game record: "
+							+ this.recorder.getSaveError().getMessage(),
+					"Recording failed", JOptionPane.ERROR_MESSAGE);
+		}
+		this.recorder = null;
+	}
+
 	/**
 	 * This inner class will listen for presses on the "Start Game" button.
 	 * It will respond by creating a new game model and starting it using
@@ -95,13 +119,28 @@ public class GUIView extends JPanel {
 				// Get the name of the game selected in the Choice
 				String gameName =
 						GUIView.this.gameChooser.getSelectedItem().toString();
-				GameModel gameModel =
-						GUIView.this.gameFactory.createGame(gameName);
+				String recordDir = System.getProperty(RECORD_DIR_PROPERTY);
+				GameModel gameModel;
+				GameRecorder recorder = null;
+				if (recordDir != null) {
+					GameConfig config = GameConfig.getDefault().withSeed(
+							System.nanoTime());
+					gameModel = GUIView.this.gameFactory.createGame(gameName,
+							config);
+					File file = new File(recordDir, gameName.replaceAll(
+							"\\W+", "_") + "-" + System.currentTimeMillis()
+							+ ".grec");
+					recorder = new GameRecorder(gameName, config, file);
+				} else {
+					gameModel = GUIView.this.gameFactory.createGame(gameName);
+				}
 
 				// Stop current game (if any) and start a new game with the
 				// new game model
 				GUIView.this.gameController.stopGame();
-				GUIView.this.gameController.startGame(gameModel);
+				reportSaveError();
+				GUIView.this.recorder = recorder;
+				GUIView.this.gameController.startGame(gameModel, recorder);
 				GUIView.this.gameView.requestFocus();
 			}
 		}
@@ -0,0 +1,644 @@
+package orig2011.v7;
+
+import java.awt.event.KeyEvent;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * An append-only archive of recorded games, read through memory mapped
+ * buffers so that statistics can be computed over millions of games
+ * without creating a GameRecord per game.
+ *
+ * An archive is two files. The data file NAME.gad holds a file header
+ * followed by the games, each a fixed size header, the name of the game
+ * and its keys:
+ *
+ * <pre>
+ * file header (16 bytes): int MAGIC, int VERSION, long reserved
+ * game header (48 bytes):
+ *   0  int  width       4 int  height      8 int  coin count
+ *   12 int  flags (FLAG_GAME_OVER)          16 long seed
+ *   24 int  updates    28 int  keys       32 int  score
+ *   36 int  length of the game name in bytes
+ *   40 long state hash
+ * game name: UTF-8, padded with zeros to a multiple of 8 bytes
+ * keys (8 bytes each): int update, int key code
+ * </pre>
+ *
+ * The keys take a fixed width rather than the varints of a GameRecord so
+ * that the k:th key of a game can be read directly, which getKey and
+ * openingFrequencies rely on. Queries compare the name bytes, so games
+ * are never confused with another game.
+ *
+ * The index file NAME.gai holds the same file header followed by the
+ * offset of every game in the data file as a long. A game is appended to
+ * the data file before its offset is appended to the index, so a game
+ * interrupted while being written is never visible. All numbers are
+ * big-endian, and every game takes a multiple of 8 bytes, so no value
+ * crosses the boundary between two mapped segments.
+ */
+public class GameArchive implements Closeable {
+
+	/** "GARC" */
+	private static final int MAGIC = 0x47415243;
+	private static final int VERSION = 2;
+	private static final int FILE_HEADER_SIZE = 16;
+
+	/** The size of the fixed header of every game. */
+	public static final int GAME_HEADER_SIZE = 48;
+	private static final int KEY_SIZE = 8;
+
+	/** Set in the flags of a game which was played until it was over. */
+	public static final int FLAG_GAME_OVER = 1;
+
+	private static final int WIDTH = 0;
+	private static final int HEIGHT = 4;
+	private static final int COIN_COUNT = 8;
+	private static final int FLAGS = 12;
+	private static final int SEED = 16;
+	private static final int TICKS = 24;
+	private static final int KEY_COUNT = 28;
+	private static final int SCORE = 32;
+	private static final int NAME_LENGTH = 36;
+	private static final int STATE_HASH = 40;
+
+	/** Log2 of the size of a mapped segment. */
+	private static final int SEGMENT_BITS = 30;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+	/** The number of keys packed into an opening. */
+	public static final int MAX_OPENING = 8;
+
+	private final RandomAccessFile dataFile;
+	private final RandomAccessFile indexFile;
+	private final MappedByteBuffer[] data;
+	private final MappedByteBuffer[] index;
+	private final int size;
+
+	/**
+	 * Opens an archive for reading. Games appended later aren't seen.
+	 *
+	 * @param base
+	 *            The archive, without the .gad and .gai extensions.
+	 * @throws IOException
+	 *             if the files can't be read or aren't an archive.
+	 */
+	public GameArchive(final File base) throws IOException {
+		this.dataFile = new RandomAccessFile(dataFile(base), "r");
+		RandomAccessFile indexRaf;
+		try {
+			indexRaf = new RandomAccessFile(indexFile(base), "r");
+		} catch (IOException e) {
+			this.dataFile.close();
+			throw e;
+		}
+		this.indexFile = indexRaf;
+		try {
+			// A writer may be appending. Map the index first and count only
+			// the offsets in the mapped part; the data file mapped after it
+			// already holds every game they refer to.
+			this.index = map(this.indexFile.getChannel());
+			checkHeader(this.index, indexFile(base));
+			long games = (mappedLength(this.index) - FILE_HEADER_SIZE) / 8;
+			if (games > Integer.MAX_VALUE) {
+				throw new IOException("Too many games: " + games);
+			}
+			this.size = (int) games;
+			this.data = map(this.dataFile.getChannel());
+			checkHeader(this.data, dataFile(base));
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	private static File dataFile(final File base) {
+		return new File(base.getPath() + ".gad");
+	}
+
+	private static File indexFile(final File base) {
+		return new File(base.getPath() + ".gai");
+	}
+
+	/**
+	 * Maps a whole file in read-only segments of 2^SEGMENT_BITS bytes.
+	 */
+	private static MappedByteBuffer[] map(final FileChannel channel)
+			throws IOException {
+		long length = channel.size();
+		int segments = (int) ((length + SEGMENT_MASK) >>> SEGMENT_BITS);
+		MappedByteBuffer[] buffers = new MappedByteBuffer[segments];
+		for (int i = 0; i < segments; i++) {
+			long start = (long) i << SEGMENT_BITS;
+			buffers[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+					Math.min(SEGMENT_MASK + 1, length - start));
+		}
+		return buffers;
+	}
+
+	private static long mappedLength(final MappedByteBuffer[] buffers) {
+		if (buffers.length == 0) {
+			return 0;
+		}
+		return ((long) (buffers.length - 1) << SEGMENT_BITS)
+				+ buffers[buffers.length - 1].limit();
+	}
+
+	private static void checkHeader(final MappedByteBuffer[] buffers,
+			final File file) throws IOException {
+		if (buffers.length == 0 || buffers[0].limit() < FILE_HEADER_SIZE
+				|| buffers[0].getInt(0) != MAGIC) {
+			throw new IOException("Not a game archive: " + file);
+		}
+		if (buffers[0].getInt(4) != VERSION) {
+			throw new IOException("Unsupported archive version "
+					+ buffers[0].getInt(4) + ": " + file);
+		}
+	}
+
+	private static byte getByte(final MappedByteBuffer[] buffers,
+			final long position) {
+		return buffers[(int) (position >>> SEGMENT_BITS)]
+				.get((int) (position & SEGMENT_MASK));
+	}
+
+	private static int getInt(final MappedByteBuffer[] buffers,
+			final long position) {
+		return buffers[(int) (position >>> SEGMENT_BITS)]
+				.getInt((int) (position & SEGMENT_MASK));
+	}
+
+	private static long getLong(final MappedByteBuffer[] buffers,
+			final long position) {
+		return buffers[(int) (position >>> SEGMENT_BITS)]
+				.getLong((int) (position & SEGMENT_MASK));
+	}
+
+	/** @return The number of games in the archive. */
+	public int size() {
+		return this.size;
+	}
+
+	/** @return The offset of a game in the data file. */
+	private long offset(final int game) {
+		if (game < 0 || game >= this.size) {
+			throw new IndexOutOfBoundsException("No game " + game);
+		}
+		return getLong(this.index, FILE_HEADER_SIZE + 8L * game);
+	}
+
+	private int headerInt(final int game, final int field) {
+		return getInt(this.data, offset(game) + field);
+	}
+
+	public int getWidth(final int game) {
+		return headerInt(game, WIDTH);
+	}
+
+	public int getHeight(final int game) {
+		return headerInt(game, HEIGHT);
+	}
+
+	public int getCoinCount(final int game) {
+		return headerInt(game, COIN_COUNT);
+	}
+
+	public long getSeed(final int game) {
+		return getLong(this.data, offset(game) + SEED);
+	}
+
+	/** @return Whether the game was played until it was over. */
+	public boolean isGameOver(final int game) {
+		return (headerInt(game, FLAGS) & FLAG_GAME_OVER) != 0;
+	}
+
+	/** @return The number of updates played. */
+	public int getTicks(final int game) {
+		return headerInt(game, TICKS);
+	}
+
+	public int getKeyCount(final int game) {
+		return headerInt(game, KEY_COUNT);
+	}
+
+	/** @return The final score. Only meaningful if isGameOver(). */
+	public int getScore(final int game) {
+		return headerInt(game, SCORE);
+	}
+
+	/** @return The name of the game. */
+	public String getGameName(final int game) {
+		long offset = offset(game);
+		byte[] name = new byte[getInt(this.data, offset + NAME_LENGTH)];
+		for (int i = 0; i < name.length; i++) {
+			name[i] = getByte(this.data, offset + GAME_HEADER_SIZE + i);
+		}
+		return new String(name, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return Whether the game at the offset has the given name, as UTF-8.
+	 */
+	private boolean hasName(final long offset, final byte[] name) {
+		if (getInt(this.data, offset + NAME_LENGTH) != name.length) {
+			return false;
+		}
+		for (int i = 0; i < name.length; i++) {
+			if (getByte(this.data, offset + GAME_HEADER_SIZE + i) != name[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** @return The position of the first key of the game at the offset. */
+	private long keysOffset(final long offset) {
+		return offset + GAME_HEADER_SIZE
+				+ padded(getInt(this.data, offset + NAME_LENGTH));
+	}
+
+	/** @return The length rounded up to a multiple of 8. */
+	private static int padded(final int length) {
+		return (length + 7) & ~7;
+	}
+
+	public long getStateHash(final int game) {
+		return getLong(this.data, offset(game) + STATE_HASH);
+	}
+
+	/** @return The update of the k:th key press of a game. */
+	public int getKeyTick(final int game, final int k) {
+		return getInt(this.data, keysOffset(offset(game)) + KEY_SIZE
+				* (long) k);
+	}
+
+	/** @return The key code of the k:th key press of a game. */
+	public int getKey(final int game, final int k) {
+		return getInt(this.data, keysOffset(offset(game)) + KEY_SIZE
+				* (long) k + 4);
+	}
+
+	/**
+	 * Reads a whole game back into a record.
+	 */
+	public GameRecord getRecord(final int game) {
+		int keyCount = getKeyCount(game);
+		int[] keyTicks = new int[keyCount];
+		int[] keys = new int[keyCount];
+		for (int k = 0; k < keyCount; k++) {
+			keyTicks[k] = getKeyTick(game, k);
+			keys[k] = getKey(game, k);
+		}
+		GameConfig config = new GameConfig(getWidth(game), getHeight(game))
+				.withCoinCount(getCoinCount(game)).withSeed(getSeed(game));
+		return new GameRecord(getGameName(game), config, getTicks(game),
+				keyTicks,
+				keys, isGameOver(game), getScore(game), getStateHash(game));
+	}
+
+	/**
+	 * Counts the finished games of the given name by score.
+	 *
+	 * @return The number of games per score, in ascending score order.
+	 */
+	public SortedMap<Integer, Integer> scoreHistogram(final String gameName) {
+		byte[] name = gameName.getBytes(StandardCharsets.UTF_8);
+		Map<Integer, int[]> counts = new HashMap<Integer, int[]>();
+		for (int game = 0; game < this.size; game++) {
+			long offset = offset(game);
+			if ((getInt(this.data, offset + FLAGS) & FLAG_GAME_OVER) == 0
+					|| !hasName(offset, name)) {
+				continue;
+			}
+			Integer score = Integer.valueOf(getInt(this.data, offset + SCORE));
+			int[] count = counts.get(score);
+			if (count == null) {
+				counts.put(score, new int[] { 1 });
+			} else {
+				count[0]++;
+			}
+		}
+		SortedMap<Integer, Integer> histogram = new TreeMap<Integer, Integer>();
+		for (Map.Entry<Integer, int[]> e : counts.entrySet()) {
+			histogram.put(e.getKey(), Integer.valueOf(e.getValue()[0]));
+		}
+		return histogram;
+	}
+
+	/**
+	 * Counts how often each sequence of first key presses was played in
+	 * the games of the given name. An opening packs up to MAX_OPENING key
+	 * codes into a long, the first key in the highest used byte; key codes
+	 * above 255 are stored as 255. Games with fewer key presses are
+	 * counted with their shorter opening.
+	 *
+	 * @param length
+	 *            The number of key presses of an opening.
+	 * @return The number of games per opening.
+	 */
+	public Map<Long, Integer> openingFrequencies(final String gameName,
+			final int length) {
+		if (length < 1 || length > MAX_OPENING) {
+			throw new IllegalArgumentException("Invalid opening length: "
+					+ length);
+		}
+		byte[] name = gameName.getBytes(StandardCharsets.UTF_8);
+		Map<Long, int[]> counts = new HashMap<Long, int[]>();
+		for (int game = 0; game < this.size; game++) {
+			long offset = offset(game);
+			if (!hasName(offset, name)) {
+				continue;
+			}
+			int keys = Math.min(length, getInt(this.data, offset + KEY_COUNT));
+			long first = keysOffset(offset);
+			long opening = 0;
+			for (int k = 0; k < keys; k++) {
+				int key = getInt(this.data, first + KEY_SIZE * (long) k + 4);
+				opening = (opening << 8) | Math.min(key, 255);
+			}
+			Long boxed = Long.valueOf(opening);
+			int[] count = counts.get(boxed);
+			if (count == null) {
+				counts.put(boxed, new int[] { 1 });
+			} else {
+				count[0]++;
+			}
+		}
+		Map<Long, Integer> frequencies = new HashMap<Long, Integer>();
+		for (Map.Entry<Long, int[]> e : counts.entrySet()) {
+			frequencies.put(e.getKey(), Integer.valueOf(e.getValue()[0]));
+		}
+		return frequencies;
+	}
+
+	/**
+	 * @return The key names of an opening from openingFrequencies.
+	 */
+	public static String formatOpening(final long opening) {
+		StringBuilder sb = new StringBuilder();
+		for (int shift = 8 * (MAX_OPENING - 1); shift >= 0; shift -= 8) {
+			int key = (int) (opening >>> shift) & 0xFF;
+			if (key == 0 && sb.length() == 0) {
+				continue;
+			}
+			if (sb.length() > 0) {
+				sb.append(' ');
+			}
+			sb.append(KeyEvent.getKeyText(key));
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			this.dataFile.close();
+		} finally {
+			this.indexFile.close();
+		}
+	}
+
+	/**
+	 * Appends games to an archive, creating it if it doesn't exist. Only
+	 * one writer may have an archive open at a time.
+	 */
+	public static final class Writer implements Closeable {
+		private final FileChannel data;
+		private final FileChannel index;
+		private final ByteBuffer header = ByteBuffer.allocate(GAME_HEADER_SIZE);
+		private final ByteBuffer offset = ByteBuffer.allocate(8);
+		/** The name and keys of the game being appended. */
+		private ByteBuffer body = ByteBuffer.allocate(64 * KEY_SIZE);
+
+		/**
+		 * Opens an archive for appending.
+		 *
+		 * @param base
+		 *            The archive, without the .gad and .gai extensions.
+		 */
+		public Writer(final File base) throws IOException {
+			this.data = open(dataFile(base));
+			FileChannel indexChannel;
+			try {
+				indexChannel = open(indexFile(base));
+			} catch (IOException e) {
+				this.data.close();
+				throw e;
+			}
+			this.index = indexChannel;
+		}
+
+		@SuppressWarnings("resource")
+		private static FileChannel open(final File file) throws IOException {
+			FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+			try {
+				if (channel.size() == 0) {
+					ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+					header.putInt(MAGIC).putInt(VERSION).putLong(0).flip();
+					writeFully(channel, header, 0);
+				} else {
+					ByteBuffer header = ByteBuffer.allocate(8);
+					channel.read(header, 0);
+					header.flip();
+					if (header.remaining() < 8 || header.getInt() != MAGIC
+							|| header.getInt() != VERSION) {
+						throw new IOException("Not a game archive: " + file);
+					}
+				}
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+			return channel;
+		}
+
+		private static void writeFully(final FileChannel channel,
+				final ByteBuffer buffer, final long position) throws IOException {
+			long p = position;
+			while (buffer.hasRemaining()) {
+				p += channel.write(buffer, p);
+			}
+		}
+
+		/**
+		 * Appends a game.
+		 *
+		 * @return The number of the game in the archive.
+		 */
+		public int append(final GameRecord record) throws IOException {
+			GameConfig config = record.getConfig();
+			byte[] name = record.getGameName().getBytes(StandardCharsets.UTF_8);
+			this.header.clear();
+			this.header.putInt(config.getWidth()).putInt(config.getHeight())
+					.putInt(config.getCoinCount())
+					.putInt(record.isGameOver() ? FLAG_GAME_OVER : 0)
+					.putLong(config.getSeed()).putInt(record.getTicks())
+					.putInt(record.getKeyCount()).putInt(record.getScore())
+					.putInt(name.length)
+					.putLong(record.getStateHash());
+			this.header.flip();
+
+			int bodyBytes = padded(name.length)
+					+ KEY_SIZE * record.getKeyCount();
+			if (this.body.capacity() < bodyBytes) {
+				this.body = ByteBuffer.allocate(Math.max(bodyBytes,
+						2 * this.body.capacity()));
+			}
+			this.body.clear();
+			this.body.put(name);
+			while (this.body.position() < padded(name.length)) {
+				this.body.put((byte) 0);
+			}
+			for (int k = 0; k < record.getKeyCount(); k++) {
+				this.body.putInt(record.getKeyTick(k)).putInt(record.getKey(k));
+			}
+			this.body.flip();
+
+			long position = this.data.size();
+			writeFully(this.data, this.header, position);
+			writeFully(this.data, this.body, position + GAME_HEADER_SIZE);
+
+			long indexPosition = this.index.size();
+			this.offset.clear();
+			this.offset.putLong(position).flip();
+			writeFully(this.index, this.offset, indexPosition);
+			return (int) ((indexPosition - FILE_HEADER_SIZE) / 8);
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				this.data.close();
+			} finally {
+				this.index.close();
+			}
+		}
+	}
+
+	/**
+	 * Plays games with random keys and appends their records. The keys of
+	 * game i are drawn from seed + i, and the game is seeded with it.
+	 */
+	private static void generate(final File base, final String gameName,
+			final int games, final long seed) throws IOException {
+		IGameFactory factory = new ReversiFactory();
+		int[] keyCodes = { 0, KeyEvent.VK_LEFT, KeyEvent.VK_UP,
+				KeyEvent.VK_RIGHT, KeyEvent.VK_DOWN, KeyEvent.VK_SPACE };
+		Writer writer = new Writer(base);
+		try {
+			for (int i = 0; i < games; i++) {
+				GameConfig config = GameConfig.getDefault().withSeed(seed + i);
+				GameModel model = factory.createGame(gameName, config);
+				GameRecorder recorder = new GameRecorder(gameName, config, null);
+				Random random = new Random(seed + i);
+				GameRecord record = null;
+				try {
+					for (int tick = 0; tick < 100000; tick++) {
+						int key = keyCodes[random.nextInt(keyCodes.length)];
+						recorder.tick(key);
+						model.gameUpdate(key);
+					}
+					record = recorder.stop(model);
+				} catch (GameOverException e) {
+					record = recorder.gameOver(model, e.getScore());
+				}
+				writer.append(record);
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static void report(final File base, final String gameName,
+			final int openingLength) throws IOException {
+		GameArchive archive = new GameArchive(base);
+		try {
+			long start = System.nanoTime();
+			SortedMap<Integer, Integer> histogram =
+					archive.scoreHistogram(gameName);
+			final Map<Long, Integer> openings =
+					archive.openingFrequencies(gameName, openingLength);
+			long elapsed = System.nanoTime() - start;
+
+			System.out.println(archive.size() + " games, scanned in "
+					+ elapsed / 1000000 + " ms");
+			System.out.println("Scores of " + gameName + ":");
+			for (Map.Entry<Integer, Integer> e : histogram.entrySet()) {
+				System.out.println(String.format("%6d: %d", e.getKey(),
+						e.getValue()));
+			}
+			List<Long> sorted = new ArrayList<Long>(openings.keySet());
+			Collections.sort(sorted, new Comparator<Long>() {
+				@Override
+				public int compare(final Long a, final Long b) {
+					return openings.get(b).compareTo(openings.get(a));
+				}
+			});
+			System.out.println("Most frequent openings of " + openingLength
+					+ " keys:");
+			for (Long opening : sorted.subList(0, Math.min(10, sorted.size()))) {
+				System.out.println(String.format("%8d: %s",
+						openings.get(opening),
+						formatOpening(opening.longValue())));
+			}
+		} finally {
+			archive.close();
+		}
+	}
+
+	/**
+	 * Usage:
+	 * <ul>
+	 * <li>GameArchive add archive record... appends .grec files.</li>
+	 * <li>GameArchive generate archive game count [seed] appends games
+	 * played with random keys.</li>
+	 * <li>GameArchive stats archive game [opening length] prints the score
+	 * histogram and the most frequent openings.</li>
+	 * </ul>
+	 */
+	public static void main(final String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("Usage: GameArchive add archive record...\n"
+					+ "       GameArchive generate archive game count [seed]\n"
+					+ "       GameArchive stats archive game [opening length]");
+			System.exit(2);
+		}
+		System.setProperty("java.awt.headless", "true");
+		File base = new File(args[1]);
+		if (args[0].equals("add")) {
+			Writer writer = new Writer(base);
+			try {
+				for (int i = 2; i < args.length; i++) {
+					writer.append(GameRecord.load(new File(args[i])));
+				}
+			} finally {
+				writer.close();
+			}
+		} else if (args[0].equals("generate")) {
+			int games = Integer.parseInt(args[3]);
+			long seed = args.length > 4 ? Long.parseLong(args[4]) : 0;
+			generate(base, args[2], games, seed);
+		} else if (args[0].equals("stats")) {
+			report(base, args[2], args.length > 3 ? Integer.parseInt(args[3])
+					: 4);
+		} else {
+			System.err.println("Unknown command: " + args[0]);
+			System.exit(2);
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package orig2011.v7;
+
+import java.awt.Dimension;
+
+/**
+ * The settings of one game, passed to IGameFactory.createGame. Instances
+ * are immutable; the with methods return a changed copy.
+ */
+public final class GameConfig {
+
+	/** The largest supported width and height of a board. */
+	public static final int MAX_SIDE = 4096;
+
+	/** The number of coins of the gold game, unless configured. */
+	public static final int DEFAULT_COIN_COUNT = 20;
+
+	private final int width;
+	private final int height;
+	private final int coinCount;
+	private final boolean seeded;
+	private final long seed;
+
+	/**
+	 * Creates a configuration for a board of the given size.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a side is less than 1 or more than MAX_SIDE.
+	 */
+	public GameConfig(final int width, final int height) {
+		this(width, height, DEFAULT_COIN_COUNT, false, 0);
+	}
+
+	private GameConfig(final int width, final int height, final int coinCount,
+			final boolean seeded, final long seed) {
+		if (width < 1 || width > MAX_SIDE || height < 1 || height > MAX_SIDE) {
+			throw new IllegalArgumentException("Invalid board size: " + width
+					+ "x" + height);
+		}
+		if (coinCount < 0) {
+			throw new IllegalArgumentException("Invalid coin count: "
+					+ coinCount);
+		}
+		this.width = width;
+		this.height = height;
+		this.coinCount = coinCount;
+		this.seeded = seeded;
+		this.seed = seed;
+	}
+
+	/**
+	 * @return A copy of this configuration with the given number of coins.
+	 */
+	public GameConfig withCoinCount(final int coinCount) {
+		return new GameConfig(this.width, this.height, coinCount, this.seeded,
+				this.seed);
+	}
+
+	/**
+	 * @return A copy of this configuration where the random events of the
+	 *         game are drawn from a generator with the given seed.
+	 */
+	public GameConfig withSeed(final long seed) {
+		return new GameConfig(this.width, this.height, this.coinCount, true,
+				seed);
+	}
+
+	/**
+	 * @return The configuration with the board size of Constants.
+	 */
+	public static GameConfig getDefault() {
+		Dimension size = Constants.getGameSize();
+		return new GameConfig(size.width, size.height);
+	}
+
+	/**
+	 * Parses a board size given as WIDTHxHEIGHT, optionally followed by
+	 * :COINS, for example "10x5" or "64x64:1000".
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the text is malformed or out of range.
+	 */
+	public static GameConfig parse(final String text) {
+		String[] parts = text.split(":");
+		String[] sides = parts[0].toLowerCase().split("x");
+		if (sides.length != 2 || parts.length > 2) {
+			throw new IllegalArgumentException(
+					"Expected WIDTHxHEIGHT[:COINS]: " + text);
+		}
+		GameConfig config = new GameConfig(Integer.parseInt(sides[0].trim()),
+				Integer.parseInt(sides[1].trim()));
+		if (parts.length == 2) {
+			config = config.withCoinCount(Integer.parseInt(parts[1].trim()));
+		}
+		return config;
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	/** @return The number of coins placed at the start of a gold game. */
+	public int getCoinCount() {
+		return this.coinCount;
+	}
+
+	/** @return Whether a seed is configured. */
+	public boolean hasSeed() {
+		return this.seeded;
+	}
+
+	/**
+	 * @return The configured seed. Only meaningful if hasSeed().
+	 */
+	public long getSeed() {
+		return this.seed;
+	}
+
+	@Override
+	public String toString() {
+		String s = this.width + "x" + this.height + ":" + this.coinCount;
+		return this.seeded ? s + " seed " + this.seed : s;
+	}
+}
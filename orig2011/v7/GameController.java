@@ -3,8 +3,7 @@ package orig2011.v7;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * The controller class of the framework. Listens to user keystrokes and
@@ -13,6 +12,33 @@ import java.util.List;
  */
 public class GameController implements Runnable {
 
+	/**
+	 * How the game thread schedules the updates of the model. The view
+	 * isn't painted by the game thread, so a slow paint never delays an
+	 * update.
+	 */
+	public enum TickPolicy {
+		/**
+		 * Wait the update interval after each update. The real interval is
+		 * the update time plus the update speed of the model.
+		 */
+		FIXED_DELAY,
+		/**
+		 * Update at a fixed rate. Updates which are late run back to back
+		 * until the game has caught up, but never more than MAX_CATCH_UP
+		 * updates behind.
+		 */
+		CATCH_UP,
+		/**
+		 * Update at a fixed rate. When an update is late by a whole
+		 * interval or more, the missed updates are skipped.
+		 */
+		SKIP
+	}
+
+	/** How many intervals CATCH_UP may fall behind before giving up. */
+	private static final int MAX_CATCH_UP = 5;
+
 	/** The view this controller is connected to. */
 	private final GameView view;
 
@@ -20,34 +46,56 @@ public class GameController implements Runnable {
 	private GameModel gameModel;
 
 	/** True when game is running. */
-	private boolean isRunning;
+	private volatile boolean isRunning;
 
 	/** Listener for key events to the game. */
 	private final KeyListener keyListener;
 
-	/** A queue for all keypresses which so far haven't been processed */
-	private final List<Integer> keypresses;
+	/** Default number of keypresses the queue holds. */
+	private static final int KEY_QUEUE_CAPACITY = 64;
 
-	/*
-	 * The declaration of keypresses above uses the language feature 'generic
-	 * types'. It can be declared in the old way like this: private
-	 * java.util.List keypresses This will however result in a warning at
-	 * compilation "Integer" in this case is the type of the objects that are
-	 * going to be used in the List
-	 */
+	/** A queue for all keypresses which so far haven't been processed */
+	private final KeyQueue keypresses;
 
 	/** The thread which the game runs in. */
 	private Thread gameThread;
 
+	/** Records the keys of the current game, or null. */
+	private GameRecorder recorder;
+
+	/** How the updates of the next game are scheduled. */
+	private volatile TickPolicy tickPolicy = TickPolicy.FIXED_DELAY;
+
+	/*
+	 * Statistics of the running game, written by the game thread only. The
+	 * jitter of an update is how late it started compared to its schedule.
+	 */
+	private volatile long tickCount;
+	private volatile long totalJitterNanos;
+	private volatile long maxJitterNanos;
+	private volatile long skippedTicks;
+
 	/**
 	 * Creats a new GameContoller associated with supplied view.
 	 */
 	public GameController(final GameView view) {
+		this(view, KEY_QUEUE_CAPACITY, KeyQueue.OverflowPolicy.DROP_OLDEST);
+	}
+
+	/**
+	 * Creates a new GameController associated with supplied view, queueing
+	 * at most keyCapacity keypresses between updates.
+	 *
+	 * @param overflowPolicy
+	 *            What to do with keypresses when the queue is full.
+	 */
+	public GameController(final GameView view, final int keyCapacity,
+			final KeyQueue.OverflowPolicy overflowPolicy) {
 		this.view = view;
 		this.gameModel = null;
 		this.isRunning = false;
 
-		this.keypresses = new LinkedList<Integer>();
+		this.keypresses = new KeyQueue(keyCapacity, overflowPolicy);
 
 		this.gameThread = null;
 
@@ -63,13 +111,15 @@ public class GameController implements Runnable {
 	}
 
 	/**
-	 * Add a key press to the end of the queue
+	 * Add a key press to the end of the queue. Called on the Swing event
+	 * thread, which is the only producer of the queue.
 	 */
-	private synchronized void enqueueKeyPress(final int key) {
+	private void enqueueKeyPress(final int key) {
 		if (this.gameModel.getUpdateSpeed() > 0) {
-			this.keypresses.add(Integer.valueOf(key));
+			this.keypresses.offer(key);
 		} else {
 			try {
+				record(key);
 				this.gameModel.gameUpdate(key);
 			} catch (GameOverException e) {
 				gameOver(e.getScore());
@@ -84,11 +134,49 @@ public class GameController implements Runnable {
 	 *
 	 * @return 0 or next unprocessed key press.
 	 */
-	private synchronized int nextKeyPress() {
-		if (this.keypresses.isEmpty()) {
-			return 0;
+	private int nextKeyPress() {
+		return this.keypresses.poll();
+	}
+
+	/** @return The number of keypresses dropped because the queue was full. */
+	public long getDroppedKeyPresses() {
+		return this.keypresses.getDropped();
+	}
+
+	/**
+	 * Sets how the updates are scheduled. Takes effect when the next game
+	 * is started.
+	 */
+	public void setTickPolicy(final TickPolicy tickPolicy) {
+		if (tickPolicy == null) {
+			throw new IllegalArgumentException("tickPolicy is null");
 		}
-		return this.keypresses.remove(0).intValue();
+		this.tickPolicy = tickPolicy;
+	}
+
+	public TickPolicy getTickPolicy() {
+		return this.tickPolicy;
+	}
+
+	/** @return The number of updates of the current or last game. */
+	public long getTickCount() {
+		return this.tickCount;
+	}
+
+	/** @return The mean lateness of the updates in nanoseconds. */
+	public long getMeanJitterNanos() {
+		long ticks = this.tickCount;
+		return ticks == 0 ? 0 : this.totalJitterNanos / ticks;
+	}
+
+	/** @return The largest lateness of an update in nanoseconds. */
+	public long getMaxJitterNanos() {
+		return this.maxJitterNanos;
+	}
+
+	/** @return The number of updates skipped by the SKIP policy. */
+	public long getSkippedTicks() {
+		return this.skippedTicks;
 	}
 
 	/**
@@ -98,6 +186,20 @@ public class GameController implements Runnable {
 	 *            Game to start
 	 */
 	public void startGame(final GameModel gameModel) {
+		startGame(gameModel, null);
+	}
+
+	/**
+	 * Starts a new game, recording the keys sent to it.
+	 *
+	 * @param gameModel
+	 *            Game to start
+	 * @param recorder
+	 *            Records the game, or null. Its record ends when the game is
+	 *            over or stopped.
+	 */
+	public void startGame(final GameModel gameModel,
+			final GameRecorder recorder) {
 		if (this.isRunning) {
 			throw new IllegalStateException("Game is already running");
 		}
@@ -110,9 +212,16 @@ public class GameController implements Runnable {
 
 		// Actually start the game
 		this.gameModel = gameModel;
+		this.recorder = recorder;
 
 		this.isRunning = true;
 
+		this.keypresses.clear();
+		this.tickCount = 0;
+		this.totalJitterNanos = 0;
+		this.maxJitterNanos = 0;
+		this.skippedTicks = 0;
+
 		// Create the new thread and start it...
 		if (this.gameModel.getUpdateSpeed() > 0) {
 			this.gameThread = new Thread(this);
@@ -134,41 +243,108 @@ public class GameController implements Runnable {
 		// Stop listening for events
 		this.view.removeKeyListener(this.keyListener);
 
-		// Make sure we wait until the thread has stopped...
+		// Wake the thread if it is waiting for the next update, and wait
+		// until it has stopped...
 		if (this.gameThread != null) {
+			this.gameThread.interrupt();
+			boolean interrupted = false;
 			while (this.gameThread.isAlive()) {
 				try {
-					Thread.sleep(100);
+					this.gameThread.join();
 				} catch (InterruptedException ie) {
-					// Pass the call on.
-					Thread.currentThread().interrupt();
+					interrupted = true;
 				}
 			}
+			if (interrupted) {
+				// Pass the call on.
+				Thread.currentThread().interrupt();
+			}
+			this.gameThread = null;
+		}
+
+		if (this.recorder != null && this.recorder.getRecord() == null) {
+			this.recorder.stop(this.gameModel);
+		}
+		this.recorder = null;
+
+		// The game thread has stopped, so no player is thinking.
+		if (this.gameModel instanceof ReversiModel) {
+			((ReversiModel) this.gameModel).shutdownPlayers();
 		}
 	}
 
 	/**
-	 * This code runs the game in a different thread.
+	 * This code runs the game in a different thread. Updates are scheduled
+	 * on System.nanoTime according to the tick policy.
 	 */
 	@Override
 	public void run() {
+		TickPolicy policy = this.tickPolicy;
+		long nextTick = System.nanoTime();
 
 		while (this.isRunning) {
+			long now = System.nanoTime();
+			if (now < nextTick) {
+				LockSupport.parkNanos(nextTick - now);
+				if (Thread.interrupted()) {
+					// if we get interrupted, we're asked to terminate ourselves
+					this.isRunning = false;
+				}
+				continue;
+			}
+			recordJitter(now - nextTick);
+
 			try {
 				// Tell model to update, send next key press.
 				// or 0 if no new keypress since last update.
-				this.gameModel.gameUpdate(nextKeyPress());
-
-				this.view.repaint();
-
-				Thread.sleep(this.gameModel.getUpdateSpeed());
-
+				// The view repaints the tiles the model reports as changed.
+				int key = nextKeyPress();
+				record(key);
+				this.gameModel.gameUpdate(key);
 			} catch (GameOverException e) {
 				gameOver(e.getScore());
-			} catch (InterruptedException e) {
-				// if we get this exception, we're asked to terminate ourselves
-				this.isRunning = false;
 			}
+
+			long period = this.gameModel.getUpdateSpeed() * 1000000L;
+			switch (policy) {
+				case CATCH_UP:
+					nextTick += period;
+					if (System.nanoTime() - nextTick > MAX_CATCH_UP * period) {
+						// Too far behind, start over from now.
+						nextTick = System.nanoTime();
+					}
+					break;
+				case SKIP:
+					nextTick += period;
+					long late = System.nanoTime() - nextTick;
+					if (period > 0 && late >= period) {
+						long missed = late / period;
+						this.skippedTicks += missed;
+						nextTick += missed * period;
+					}
+					break;
+				default:
+					nextTick = System.nanoTime() + period;
+					break;
+			}
+		}
+	}
+
+	private void recordJitter(final long jitter) {
+		this.tickCount++;
+		this.totalJitterNanos += jitter;
+		if (jitter > this.maxJitterNanos) {
+			this.maxJitterNanos = jitter;
+		}
+	}
+
+	/**
+	 * Records the key of the update about to run, unless the recording has
+	 * ended.
+	 */
+	private void record(final int key) {
+		if (this.recorder != null && this.recorder.getRecord() == null) {
+			this.recorder.tick(key);
 		}
 	}
 
@@ -176,6 +352,9 @@ public class GameController implements Runnable {
 		// we got a game over signal, time to exit...
 		// The current implementation ignores the game score
 		this.isRunning = false;
+		if (this.recorder != null && this.recorder.getRecord() == null) {
+			this.recorder.gameOver(this.gameModel, score);
+		}
 		System.out.println("Game over: " + score);
 	}
 }
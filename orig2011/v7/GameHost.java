@@ -0,0 +1,356 @@
+package orig2011.v7;
+
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many games at once without any view, all of them updated by one
+ * shared pool of scheduler threads instead of a thread per game.
+ *
+ * Every session is updated at the fixed rate given by the update speed of
+ * its model. An update of a session never runs concurrently with another
+ * update of the same session, so the models need no locking. A session
+ * ends when its game is over or it is stopped; its future completes then.
+ */
+public class GameHost {
+
+	/** Capacity of the key queue of every session. */
+	private static final int KEY_QUEUE_CAPACITY = 64;
+
+	private final ScheduledThreadPoolExecutor scheduler;
+
+	private final Set<Session> sessions =
+			Collections.newSetFromMap(new ConcurrentHashMap<Session, Boolean>());
+
+	/**
+	 * Creates a host updating its games on the given number of threads.
+	 */
+	public GameHost(final int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Invalid thread count: "
+					+ threads);
+		}
+		final AtomicInteger count = new AtomicInteger();
+		this.scheduler = new ScheduledThreadPoolExecutor(threads,
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(final Runnable r) {
+						Thread t = new Thread(r, "game-host-"
+								+ count.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		this.scheduler.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * A game running on the host.
+	 */
+	public final class Session implements Runnable {
+		private final GameModel model;
+		private final KeyQueue keys;
+		private final long periodNanos;
+		private final CompletableFuture<Integer> result =
+				new CompletableFuture<Integer>();
+		private volatile ScheduledFuture<?> task;
+		private long startNanos;
+
+		/*
+		 * Metrics, written by the update of the session only. The jitter of
+		 * an update is how late it started compared to its schedule.
+		 */
+		private volatile long ticks;
+		private volatile long totalUpdateNanos;
+		private volatile long maxUpdateNanos;
+		private volatile long totalJitterNanos;
+		private volatile long maxJitterNanos;
+
+		Session(final GameModel model, final KeyQueue.OverflowPolicy policy) {
+			this.model = model;
+			this.keys = new KeyQueue(KEY_QUEUE_CAPACITY, policy);
+			this.periodNanos = model.getUpdateSpeed() * 1000000L;
+		}
+
+		/**
+		 * Runs one update of the game. Called by the scheduler.
+		 */
+		@Override
+		public void run() {
+			if (this.result.isDone()) {
+				return;
+			}
+			long start = System.nanoTime();
+			long jitter = Math.max(0,
+					start - this.startNanos - this.ticks * this.periodNanos);
+			try {
+				this.model.gameUpdate(this.keys.poll());
+			} catch (GameOverException e) {
+				finish(Integer.valueOf(e.getScore()));
+			} catch (Throwable e) {
+				// Also catch errors: the scheduler would silently cancel the
+				// task and leave the future incomplete.
+				this.result.completeExceptionally(e);
+				finish(null);
+			}
+			if (this.result.isDone()) {
+				// Stopped during the update, whose player may have started
+				// its threads again.
+				shutdownPlayers();
+			}
+			long elapsed = System.nanoTime() - start;
+			this.ticks++;
+			this.totalUpdateNanos += elapsed;
+			this.maxUpdateNanos = Math.max(this.maxUpdateNanos, elapsed);
+			this.totalJitterNanos += jitter;
+			this.maxJitterNanos = Math.max(this.maxJitterNanos, jitter);
+		}
+
+		private void finish(final Integer score) {
+			this.result.complete(score);
+			GameHost.this.sessions.remove(this);
+			ScheduledFuture<?> t = this.task;
+			if (t != null) {
+				t.cancel(false);
+			}
+			shutdownPlayers();
+		}
+
+		/**
+		 * Stops the threads of the computer players, like GameController
+		 * and SimulationRunner do when they abandon a game.
+		 */
+		private void shutdownPlayers() {
+			if (this.model instanceof ReversiModel) {
+				((ReversiModel) this.model).shutdownPlayers();
+			}
+		}
+
+		/**
+		 * Queues a key for the next update. Only one thread may send keys
+		 * to a session.
+		 *
+		 * @return false if a key was dropped because the queue was full.
+		 */
+		public boolean sendKey(final int key) {
+			return this.keys.offer(key);
+		}
+
+		/**
+		 * Stops the game. The future completes with null unless the game
+		 * had already ended. An update already running isn't interrupted,
+		 * but the computer players are shut down once it is done.
+		 */
+		public void stop() {
+			finish(null);
+		}
+
+		/**
+		 * Waits for the game to end.
+		 *
+		 * @return The score, or null if the session was stopped.
+		 */
+		public Integer join() throws InterruptedException {
+			try {
+				return this.result.get();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Game failed", e.getCause());
+			}
+		}
+
+		/**
+		 * @return A future completing with the score when the game is over,
+		 *         or with null when the session is stopped.
+		 */
+		public CompletableFuture<Integer> getFuture() {
+			return this.result;
+		}
+
+		public GameModel getModel() {
+			return this.model;
+		}
+
+		public boolean isDone() {
+			return this.result.isDone();
+		}
+
+		/** @return The number of updates run. */
+		public long getTicks() {
+			return this.ticks;
+		}
+
+		/** @return The mean time of an update in nanoseconds. */
+		public long getMeanUpdateNanos() {
+			long n = this.ticks;
+			return n == 0 ? 0 : this.totalUpdateNanos / n;
+		}
+
+		/** @return The longest update in nanoseconds. */
+		public long getMaxUpdateNanos() {
+			return this.maxUpdateNanos;
+		}
+
+		/** @return The mean lateness of the updates in nanoseconds. */
+		public long getMeanJitterNanos() {
+			long n = this.ticks;
+			return n == 0 ? 0 : this.totalJitterNanos / n;
+		}
+
+		/** @return The largest lateness of an update in nanoseconds. */
+		public long getMaxJitterNanos() {
+			return this.maxJitterNanos;
+		}
+
+		/** @return The number of keys dropped because the queue was full. */
+		public long getDroppedKeys() {
+			return this.keys.getDropped();
+		}
+	}
+
+	/**
+	 * Starts running a game, dropping the oldest queued key when keys
+	 * arrive faster than the game takes them.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the model doesn't want time driven updates.
+	 * @throws IllegalStateException
+	 *             if the host has been shut down.
+	 */
+	public Session start(final GameModel model) {
+		return start(model, KeyQueue.OverflowPolicy.DROP_OLDEST);
+	}
+
+	/**
+	 * Starts running a game, handling keys which don't fit in the key
+	 * queue by the given policy. COALESCE is only right for games where a
+	 * repeated direction key changes nothing.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the model doesn't want time driven updates.
+	 * @throws IllegalStateException
+	 *             if the host has been shut down.
+	 */
+	public Session start(final GameModel model,
+			final KeyQueue.OverflowPolicy policy) {
+		if (model.getUpdateSpeed() <= 0) {
+			throw new IllegalArgumentException(
+					"Only games with an update speed can be hosted");
+		}
+		if (this.scheduler.isShutdown()) {
+			throw new IllegalStateException("Host is shut down");
+		}
+		Session session = new Session(model, policy);
+		this.sessions.add(session);
+		session.startNanos = System.nanoTime();
+		session.task = this.scheduler.scheduleAtFixedRate(session, 0,
+				session.periodNanos, TimeUnit.NANOSECONDS);
+		if (session.isDone()) {
+			// The game ended before the task was assigned.
+			session.task.cancel(false);
+		}
+		return session;
+	}
+
+	/** @return The sessions still running. */
+	public List<Session> getSessions() {
+		return new ArrayList<Session>(this.sessions);
+	}
+
+	/**
+	 * Stops all sessions and the scheduler threads. Returns when running
+	 * updates have finished, or the timeout has passed.
+	 *
+	 * @return true if the threads terminated in time.
+	 */
+	public boolean shutdown(final long timeout, final TimeUnit unit)
+			throws InterruptedException {
+		this.scheduler.shutdown();
+		for (Session session : getSessions()) {
+			session.stop();
+		}
+		return this.scheduler.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * Runs a number of games with random keys and reports the updates and
+	 * their timing.
+	 *
+	 * Usage: GameHost [game] [sessions] [threads] [seed] [WIDTHxHEIGHT]
+	 */
+	public static void main(final String[] args) throws InterruptedException {
+		System.setProperty("java.awt.headless", "true");
+		String gameName = args.length > 0 ? args[0] : "Gold";
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int threads = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+		GameConfig config = args.length > 4 ? GameConfig.parse(args[4])
+				: GameConfig.getDefault();
+
+		IGameFactory factory = new ReversiFactory();
+		GameHost host = new GameHost(threads);
+		// The Gold collector keeps its direction, so repeated keys can go.
+		KeyQueue.OverflowPolicy policy = "Gold".equals(gameName)
+				? KeyQueue.OverflowPolicy.COALESCE
+				: KeyQueue.OverflowPolicy.DROP_OLDEST;
+
+		long start = System.nanoTime();
+		List<Session> all = new ArrayList<Session>(count);
+		try {
+			for (int i = 0; i < count; i++) {
+				GameConfig gameConfig = config.hasSeed() ? config
+						: config.withSeed(seed + i);
+				all.add(host.start(factory.createGame(gameName, gameConfig),
+						policy));
+			}
+			// This thread is the only one sending keys.
+			Random random = new Random(seed);
+			int[] keys = { KeyEvent.VK_LEFT, KeyEvent.VK_UP,
+					KeyEvent.VK_RIGHT, KeyEvent.VK_DOWN, KeyEvent.VK_SPACE };
+			while (!host.getSessions().isEmpty()) {
+				for (Session session : host.getSessions()) {
+					session.sendKey(keys[random.nextInt(keys.length)]);
+				}
+				Thread.sleep(50);
+			}
+			for (Session session : all) {
+				session.join();
+			}
+		} finally {
+			host.shutdown(10, TimeUnit.SECONDS);
+		}
+		long elapsed = Math.max(1, System.nanoTime() - start);
+
+		long ticks = 0;
+		long jitter = 0;
+		long maxJitter = 0;
+		long update = 0;
+		for (Session session : all) {
+			ticks += session.getTicks();
+			jitter += session.getMeanJitterNanos() * session.getTicks();
+			update += session.getMeanUpdateNanos() * session.getTicks();
+			maxJitter = Math.max(maxJitter, session.getMaxJitterNanos());
+		}
+		System.out.println(gameName + " " + config + ": " + count
+				+ " sessions on " + threads + " threads in " + elapsed / 1000000 + " ms");
+		System.out.println(String.format("%d updates, %.0f updates/s", ticks,
+				ticks * 1e9 / elapsed));
+		if (ticks > 0) {
+			System.out.println("Update mean " + update / ticks / 1000
+					+ " us, jitter mean " + jitter / ticks / 1000
+					+ " us, max " + maxJitter / 1000 + " us");
+		}
+	}
+}
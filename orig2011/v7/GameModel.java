@@ -26,6 +26,51 @@ public interface GameModel extends IObservable {
 	 */
 	public GameTile getGameboardState(final int x, final int y);
 
+	/**
+	 * Returns the GameTile in a logical position of the gameboard.
+	 *
+	 * @param packed
+	 *            The position, packed with Position.pack(x, y).
+	 */
+	public GameTile getPackedGameboardState(final int packed);
+
+	/**
+	 * Copies the tiles of the whole gameboard into an array in one pass,
+	 * the tile of (x,y) at index x * getHeight() + y. Cheaper than asking
+	 * for every tile on its own when the whole board is read.
+	 *
+	 * @param dest
+	 *            An array of at least getWidth() * getHeight() elements.
+	 * @throws IndexOutOfBoundsException
+	 *             if the array is too short.
+	 */
+	public void copyGameboardState(final GameTile[] dest);
+
+	/**
+	 * Returns the position of a cell of the gameboard. Positions are
+	 * shared, so calling this doesn't allocate on most boards.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if (x,y) is outside the gameboard.
+	 */
+	public Position getPosition(final int x, final int y);
+
+	/**
+	 * @return The number of columns of the gameboard.
+	 */
+	public int getWidth();
+
+	/**
+	 * @return The number of rows of the gameboard.
+	 */
+	public int getHeight();
+
+	/**
+	 * Returns a hash of the state of the game. Equal states give equal
+	 * hashes in every run of the program, so replays can be checked
+	 * against a recorded game.
+	 */
+	public long getStateHash();
 
 	/**
 	 * This method is called repeatedly so that the game can update it's state.
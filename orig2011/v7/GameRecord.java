@@ -0,0 +1,257 @@
+package orig2011.v7;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A recorded game: everything needed to play it again, and the outcome to
+ * check the replay against.
+ *
+ * The binary format, all numbers big-endian:
+ *
+ * <pre>
+ * int     MAGIC
+ * byte    VERSION
+ * UTF     game name
+ * int     width, height, coin count
+ * long    seed
+ * varint  number of updates
+ * varint  number of keys
+ * keys    per key: varint updates since the previous key, varint key code
+ * boolean whether the game ended with GameOverException
+ * int     score, if it did
+ * long    state hash after the last update
+ * </pre>
+ *
+ * Updates without a key press aren't stored, so a record takes a few bytes
+ * per key press.
+ */
+public final class GameRecord {
+
+	/** "GREC" */
+	private static final int MAGIC = 0x47524543;
+	private static final int VERSION = 1;
+
+	private final String gameName;
+	private final GameConfig config;
+	private final int ticks;
+
+	/** The updates with a key, ascending, and their keys. */
+	private final int[] keyTicks;
+	private final int[] keys;
+
+	private final boolean gameOver;
+	private final int score;
+	private final long stateHash;
+
+	/**
+	 * Creates a record.
+	 *
+	 * @param config
+	 *            The configuration of the game, which must have a seed.
+	 * @param keyTicks
+	 *            The updates with a key press, in ascending order.
+	 * @param keys
+	 *            The key of each of these updates.
+	 */
+	public GameRecord(final String gameName, final GameConfig config,
+			final int ticks, final int[] keyTicks, final int[] keys,
+			final boolean gameOver, final int score, final long stateHash) {
+		if (!config.hasSeed()) {
+			throw new IllegalArgumentException(
+					"Only seeded games can be recorded");
+		}
+		if (keyTicks.length != keys.length) {
+			throw new IllegalArgumentException("Keys and updates don't match");
+		}
+		this.gameName = gameName;
+		this.config = config;
+		this.ticks = ticks;
+		this.keyTicks = keyTicks.clone();
+		this.keys = keys.clone();
+		this.gameOver = gameOver;
+		this.score = score;
+		this.stateHash = stateHash;
+	}
+
+	public String getGameName() {
+		return this.gameName;
+	}
+
+	public GameConfig getConfig() {
+		return this.config;
+	}
+
+	/** @return The number of updates played. */
+	public int getTicks() {
+		return this.ticks;
+	}
+
+	/** @return The number of key presses. */
+	public int getKeyCount() {
+		return this.keys.length;
+	}
+
+	/** @return The update of the i:th key press. */
+	public int getKeyTick(final int i) {
+		return this.keyTicks[i];
+	}
+
+	/** @return The key code of the i:th key press. */
+	public int getKey(final int i) {
+		return this.keys[i];
+	}
+
+	/** @return Whether the game was played until it was over. */
+	public boolean isGameOver() {
+		return this.gameOver;
+	}
+
+	/** @return The final score. Only meaningful if isGameOver(). */
+	public int getScore() {
+		return this.score;
+	}
+
+	/** @return GameModel.getStateHash() after the last update. */
+	public long getStateHash() {
+		return this.stateHash;
+	}
+
+	/**
+	 * Writes the record in the binary format.
+	 */
+	public void write(final OutputStream stream) throws IOException {
+		DataOutputStream out = new DataOutputStream(stream);
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeUTF(this.gameName);
+		out.writeInt(this.config.getWidth());
+		out.writeInt(this.config.getHeight());
+		out.writeInt(this.config.getCoinCount());
+		out.writeLong(this.config.getSeed());
+		writeVarint(out, this.ticks);
+		writeVarint(out, this.keys.length);
+		int previous = 0;
+		for (int i = 0; i < this.keys.length; i++) {
+			writeVarint(out, this.keyTicks[i] - previous);
+			writeVarint(out, this.keys[i]);
+			previous = this.keyTicks[i];
+		}
+		out.writeBoolean(this.gameOver);
+		if (this.gameOver) {
+			out.writeInt(this.score);
+		}
+		out.writeLong(this.stateHash);
+		out.flush();
+	}
+
+	/**
+	 * Reads a record in the binary format.
+	 *
+	 * @throws IOException
+	 *             if the stream doesn't hold a valid record.
+	 */
+	public static GameRecord read(final InputStream stream) throws IOException {
+		DataInputStream in = new DataInputStream(stream);
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a game record");
+		}
+		int version = in.readUnsignedByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported record version: " + version);
+		}
+		String gameName = in.readUTF();
+		int width = in.readInt();
+		int height = in.readInt();
+		int coinCount = in.readInt();
+		long seed = in.readLong();
+		GameConfig config;
+		try {
+			config = new GameConfig(width, height).withCoinCount(coinCount)
+					.withSeed(seed);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid configuration", e);
+		}
+		int ticks = readVarint(in);
+		int count = readVarint(in);
+		if (count > ticks) {
+			throw new IOException("More keys than updates");
+		}
+		int[] keyTicks = new int[count];
+		int[] keys = new int[count];
+		int tick = 0;
+		for (int i = 0; i < count; i++) {
+			tick += readVarint(in);
+			if (tick >= ticks || (i > 0 && tick <= keyTicks[i - 1])) {
+				throw new IOException("Key out of order at update " + tick);
+			}
+			keyTicks[i] = tick;
+			keys[i] = readVarint(in);
+		}
+		boolean gameOver = in.readBoolean();
+		int score = gameOver ? in.readInt() : 0;
+		long stateHash = in.readLong();
+		return new GameRecord(gameName, config, ticks, keyTicks, keys,
+				gameOver, score, stateHash);
+	}
+
+	/**
+	 * Writes the record to a file.
+	 */
+	public void save(final File file) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			write(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads a record from a file.
+	 */
+	public static GameRecord load(final File file) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes a non-negative int in 7 bit groups, low group first.
+	 */
+	private static void writeVarint(final DataOutputStream out, final int value)
+			throws IOException {
+		int v = value;
+		while ((v & ~0x7F) != 0) {
+			out.writeByte((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+
+	private static int readVarint(final DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				if (value < 0) {
+					throw new IOException("Negative varint");
+				}
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+}
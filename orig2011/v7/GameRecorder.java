@@ -0,0 +1,131 @@
+package orig2011.v7;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Records the keys a GameController sends to its model, update by update,
+ * into a GameRecord. The model must have been created with the game name
+ * and seeded configuration given to the recorder.
+ *
+ * All methods but getSaveError are called by the thread updating the
+ * model.
+ */
+public class GameRecorder {
+
+	private final String gameName;
+	private final GameConfig config;
+
+	/** Where to save the record when the game ends, or null. */
+	private final File file;
+
+	private int ticks;
+	private int keyCount;
+	private int[] keyTicks = new int[64];
+	private int[] keys = new int[64];
+
+	private GameRecord record;
+
+	/** Why the record couldn't be saved, or null. */
+	private volatile IOException saveError;
+
+	/**
+	 * Creates a recorder.
+	 *
+	 * @param config
+	 *            The configuration of the recorded model. Must have a seed.
+	 * @param file
+	 *            The file to save the record to when the game ends, or null
+	 *            to only keep it in memory.
+	 */
+	public GameRecorder(final String gameName, final GameConfig config,
+			final File file) {
+		if (!config.hasSeed()) {
+			throw new IllegalArgumentException(
+					"Only seeded games can be recorded");
+		}
+		this.gameName = gameName;
+		this.config = config;
+		this.file = file;
+	}
+
+	/**
+	 * Records the key of the next update. Must be called before the update
+	 * is run.
+	 *
+	 * @param key
+	 *            The key, or 0 for an update without a key press.
+	 */
+	public void tick(final int key) {
+		if (this.record != null) {
+			throw new IllegalStateException("The recording has ended");
+		}
+		if (key != 0) {
+			if (this.keyCount == this.keys.length) {
+				int[] newTicks = new int[this.keyCount * 2];
+				int[] newKeys = new int[this.keyCount * 2];
+				System.arraycopy(this.keyTicks, 0, newTicks, 0, this.keyCount);
+				System.arraycopy(this.keys, 0, newKeys, 0, this.keyCount);
+				this.keyTicks = newTicks;
+				this.keys = newKeys;
+			}
+			this.keyTicks[this.keyCount] = this.ticks;
+			this.keys[this.keyCount] = key;
+			this.keyCount++;
+		}
+		this.ticks++;
+	}
+
+	/**
+	 * Ends the recording when the game is over.
+	 *
+	 * @return The record.
+	 */
+	public GameRecord gameOver(final GameModel model, final int score) {
+		return finish(model, true, score);
+	}
+
+	/**
+	 * Ends the recording of a game which was stopped before it was over.
+	 *
+	 * @return The record.
+	 */
+	public GameRecord stop(final GameModel model) {
+		return finish(model, false, 0);
+	}
+
+	private GameRecord finish(final GameModel model, final boolean gameOver,
+			final int score) {
+		if (this.record != null) {
+			return this.record;
+		}
+		int[] usedTicks = new int[this.keyCount];
+		int[] usedKeys = new int[this.keyCount];
+		System.arraycopy(this.keyTicks, 0, usedTicks, 0, this.keyCount);
+		System.arraycopy(this.keys, 0, usedKeys, 0, this.keyCount);
+		this.record = new GameRecord(this.gameName, this.config, this.ticks,
+				usedTicks, usedKeys, gameOver, score, model.getStateHash());
+		if (this.file != null) {
+			try {
+				this.record.save(this.file);
+			} catch (IOException e) {
+				this.saveError = e;
+			}
+		}
+		return this.record;
+	}
+
+	/** @return The record, or null while still recording. */
+	public GameRecord getRecord() {
+		return this.record;
+	}
+
+	/**
+	 * @return Why the record couldn't be saved to its file when the
+	 *         recording ended, or null if it was saved or isn't saved to a
+	 *         file. May be called by any thread.
+	 */
+	public IOException getSaveError() {
+		return this.saveError;
+	}
+}
@@ -0,0 +1,134 @@
+package orig2011.v7;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Plays recorded games again as fast as possible, without a view or a
+ * controller, and checks that they end in the recorded state.
+ *
+ * Only games whose models are deterministic given their seed and keys can
+ * be replayed; the computer Reversi players think for a fixed time and
+ * may choose differently on every run.
+ *
+ * Usage: GameReplayer record...
+ */
+public class GameReplayer {
+
+	private final IGameFactory factory;
+
+	/**
+	 * Creates a replayer creating its models with the given factory.
+	 */
+	public GameReplayer(final IGameFactory factory) {
+		this.factory = factory;
+	}
+
+	/**
+	 * The outcome of a replay.
+	 */
+	public static final class Result {
+		private final boolean gameOver;
+		private final int score;
+		private final int ticks;
+		private final long stateHash;
+		private final long elapsedNanos;
+
+		Result(final boolean gameOver, final int score, final int ticks,
+				final long stateHash, final long elapsedNanos) {
+			this.gameOver = gameOver;
+			this.score = score;
+			this.ticks = ticks;
+			this.stateHash = stateHash;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/** @return Whether the game ended with GameOverException. */
+		public boolean isGameOver() {
+			return this.gameOver;
+		}
+
+		public int getScore() {
+			return this.score;
+		}
+
+		/** @return The number of updates played. */
+		public int getTicks() {
+			return this.ticks;
+		}
+
+		public long getStateHash() {
+			return this.stateHash;
+		}
+
+		public long getElapsedNanos() {
+			return this.elapsedNanos;
+		}
+
+		/**
+		 * @return Whether the replay ended the way the record did.
+		 */
+		public boolean matches(final GameRecord record) {
+			return this.gameOver == record.isGameOver()
+					&& this.ticks == record.getTicks()
+					&& this.stateHash == record.getStateHash()
+					&& (!this.gameOver || this.score == record.getScore());
+		}
+	}
+
+	/**
+	 * Plays a recorded game again, sending every recorded key in the
+	 * update it was recorded in.
+	 */
+	public Result replay(final GameRecord record) {
+		GameModel model = this.factory.createGame(record.getGameName(),
+				record.getConfig());
+		long start = System.nanoTime();
+		int next = 0;
+		int tick = 0;
+		try {
+			while (tick < record.getTicks()) {
+				int key = 0;
+				if (next < record.getKeyCount() && record.getKeyTick(next) == tick) {
+					key = record.getKey(next);
+					next++;
+				}
+				tick++;
+				model.gameUpdate(key);
+			}
+		} catch (GameOverException e) {
+			return new Result(true, e.getScore(), tick, model.getStateHash(),
+					System.nanoTime() - start);
+		}
+		return new Result(false, 0, tick, model.getStateHash(),
+				System.nanoTime() - start);
+	}
+
+	public static void main(final String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: GameReplayer record...");
+			System.exit(2);
+		}
+		System.setProperty("java.awt.headless", "true");
+		GameReplayer replayer = new GameReplayer(new ReversiFactory());
+		boolean ok = true;
+		for (String name : args) {
+			GameRecord record = GameRecord.load(new File(name));
+			Result result = replayer.replay(record);
+			boolean matches = result.matches(record);
+			ok &= matches;
+			long elapsed = Math.max(1, result.getElapsedNanos());
+			System.out.println(name + ": " + record.getGameName() + " "
+					+ record.getConfig() + ", " + result.getTicks()
+					+ " updates in " + elapsed / 1000 + " us ("
+					+ result.getTicks() * 1000000000L / elapsed
+					+ " updates/s) " + (matches ? "ok" : "MISMATCH, recorded "
+					+ record.getTicks() + " updates, hash "
+					+ Long.toHexString(record.getStateHash()) + ", replayed hash "
+					+ Long.toHexString(result.getStateHash())));
+		}
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+}
@@ -2,17 +2,26 @@ package orig2011.v7;
 
 import javax.swing.*;
 import java.awt.*;
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
 
 /**
  * A view Component suitable for inclusion in an AWT Frame. Paints itself by
  * consulting its model.
+ * <p>
+ * The board is kept in an image of its own. The model reports the changes
+ * of each update as one change set; its changed tiles are marked as dirty
+ * and a single repaint covering them is requested. Painting redraws the
+ * dirty tiles into the image before copying the exposed part of it to the
+ * screen. Besides the changed tiles, only the old and new cursor
+ * position are repainted; other properties, such as scores or the side to
+ * move, don't change any tile by themselves. The whole board is only
+ * painted again when the model or its size changes.
  */
-public class GameView extends JComponent implements PropertyChangeListener{
+public class GameView extends JComponent implements IChangeSetListener {
 
 	/** Size of game model */
-	private final Dimension modelSize;
+	private Dimension modelSize;
 
 	/** Size of every tile in the model */
 	private final Dimension tileSize;
@@ -26,6 +35,18 @@ public class GameView extends JComponent implements PropertyChangeListener{
 	/** Image representing the offscreen graphics */
 	private Image offscreenImage;
 
+	/** Image holding the last painted state of every tile */
+	private BufferedImage boardImage;
+
+	/** Tiles which changed since they were last painted, by x * height + y */
+	private final BitSet dirtyTiles = new BitSet();
+
+	/** True when every tile must be painted again */
+	private boolean allDirty = true;
+
+	/** The tiles of the model, read in one call when all are painted */
+	private GameTile[] snapshot;
+
 	/**
 	 * Creates a view where each GameObject has side length 40 pixels..
 	 */
@@ -49,14 +70,31 @@ public class GameView extends JComponent implements PropertyChangeListener{
 	}
 
 	/**
-	 * Updates the view with a new model.
+	 * Updates the view with a new model. The view takes the size of the
+	 * board of the model.
 	 */
 	public void setModel(final GameModel model) {
+		if (this.model != null) {
+			this.model.removeChangeSetListener(this);
+		}
 		this.model = model;
 		if (model != null) {
-			this.model.addObserver(this);
+			if (model.getWidth() != this.modelSize.width
+					|| model.getHeight() != this.modelSize.height) {
+				synchronized (this.dirtyTiles) {
+					this.modelSize = new Dimension(model.getWidth(),
+							model.getHeight());
+					this.boardImage = null;
+				}
+				setPreferredSize(new Dimension(
+						this.modelSize.width * this.tileSize.width,
+						this.modelSize.height * this.tileSize.height));
+				revalidate();
+			}
+			this.model.addChangeSetListener(this);
 		}
 
+		markAllDirty();
 		repaint();
 	}
 
@@ -83,27 +121,26 @@ public class GameView extends JComponent implements PropertyChangeListener{
 
 	/**
 	 * Consults the model to paint the game matrix. If model is null, draws a
-	 * default text.
+	 * default text. Only tiles which changed since the last paint are drawn
+	 * again.
 	 */
 	@Override
 	public void paintComponent(final Graphics g) {
 		// Check if we have a running game
 		super.paintComponent(g);
-		g.setColor(this.getBackground());
-		g.fillRect(0, 0, getWidth(), getHeight());
 
 		if (this.model != null) {
-
-			// Draw all tiles by going over them x-wise and y-wise.
-			for (int i = 0; i < this.modelSize.width; i++) {
-				for (int j = 0; j < this.modelSize.height; j++) {
-					GameTile tile = this.model.getGameboardState(i, j);
-					tile.draw(g, i * this.tileSize.width, j
-									* this.tileSize.height,
-							this.tileSize);
-				}
+			paintDirtyTiles();
+			Rectangle clip = g.getClipBounds();
+			if (clip == null) {
+				clip = new Rectangle(0, 0, getWidth(), getHeight());
 			}
+			g.setColor(this.getBackground());
+			g.fillRect(clip.x, clip.y, clip.width, clip.height);
+			g.drawImage(this.boardImage, 0, 0, this);
 		} else {
+			g.setColor(this.getBackground());
+			g.fillRect(0, 0, getWidth(), getHeight());
 			g.setFont(new Font("Sans", Font.BOLD, 24));
 			g.setColor(Color.BLACK);
 			final char[] message = "No model chosen.".toCharArray();
@@ -111,7 +148,124 @@ public class GameView extends JComponent implements PropertyChangeListener{
 		}
 	}
 
-	public void propertyChange(PropertyChangeEvent evt) {
-		repaint();
+	/**
+	 * Draws the tiles marked as dirty into the board image.
+	 */
+	private void paintDirtyTiles() {
+		if (this.boardImage == null) {
+			this.boardImage = new BufferedImage(
+					this.modelSize.width * this.tileSize.width,
+					this.modelSize.height * this.tileSize.height,
+					BufferedImage.TYPE_INT_RGB);
+			markAllDirty();
+		}
+
+		BitSet tiles;
+		boolean all;
+		synchronized (this.dirtyTiles) {
+			all = this.allDirty;
+			tiles = (BitSet) this.dirtyTiles.clone();
+			this.allDirty = false;
+			this.dirtyTiles.clear();
+		}
+
+		Graphics2D g = this.boardImage.createGraphics();
+		try {
+			if (all) {
+				// Read the whole board at once, then draw all tiles by going
+				// over them x-wise and y-wise.
+				int cells = this.modelSize.width * this.modelSize.height;
+				if (this.snapshot == null || this.snapshot.length != cells) {
+					this.snapshot = new GameTile[cells];
+				}
+				this.model.copyGameboardState(this.snapshot);
+				int t = 0;
+				for (int i = 0; i < this.modelSize.width; i++) {
+					for (int j = 0; j < this.modelSize.height; j++) {
+						paintTile(g, i, j, this.snapshot[t++]);
+					}
+				}
+			} else {
+				for (int t = tiles.nextSetBit(0); t >= 0;
+						t = tiles.nextSetBit(t + 1)) {
+					int x = t / this.modelSize.height;
+					int y = t % this.modelSize.height;
+					paintTile(g, x, y, this.model.getGameboardState(x, y));
+				}
+			}
+		} finally {
+			g.dispose();
+		}
+	}
+
+	/**
+	 * Draws a single tile, clipped to its own rectangle so it can't paint
+	 * over its neighbours.
+	 */
+	private void paintTile(final Graphics2D g, final int x, final int y,
+			final GameTile tile) {
+		int px = x * this.tileSize.width;
+		int py = y * this.tileSize.height;
+		g.setClip(px, py, this.tileSize.width, this.tileSize.height);
+		g.setColor(this.getBackground());
+		g.fillRect(px, py, this.tileSize.width, this.tileSize.height);
+		tile.draw(g, px, py, this.tileSize);
+	}
+
+	private void markAllDirty() {
+		synchronized (this.dirtyTiles) {
+			this.allDirty = true;
+			this.dirtyTiles.clear();
+		}
+	}
+
+	/**
+	 * Marks a tile as dirty and adds its rectangle to the area to repaint.
+	 *
+	 * @return The area to repaint, or null if still empty.
+	 */
+	private Rectangle markDirty(final int x, final int y, final Rectangle area) {
+		if (x < 0 || x >= this.modelSize.width || y < 0
+				|| y >= this.modelSize.height) {
+			return area;
+		}
+		this.dirtyTiles.set(x * this.modelSize.height + y);
+		Rectangle tile = new Rectangle(x * this.tileSize.width,
+				y * this.tileSize.height, this.tileSize.width,
+				this.tileSize.height);
+		if (area == null) {
+			return tile;
+		}
+		area.add(tile);
+		return area;
+	}
+
+	/**
+	 * Marks the changed tiles of an update for repainting, together with
+	 * the old and new cursor position of Reversi. Other properties are
+	 * ignored: a model reports every tile whose look they change, such as
+	 * the Reversi cursor tile when the side to move changes, as a changed
+	 * tile.
+	 */
+	public void modelChanged(final ChangeSet changes) {
+		Rectangle area = null;
+		synchronized (this.dirtyTiles) {
+			for (int i = 0; i < changes.getTileCount(); i++) {
+				area = markDirty(changes.getTileX(i), changes.getTileY(i), area);
+			}
+			Object oldPos = changes.getOldValue("cursorPos");
+			Object newPos = changes.getNewValue("cursorPos");
+			if (oldPos instanceof Position) {
+				area = markDirty(((Position) oldPos).getX(),
+						((Position) oldPos).getY(), area);
+			}
+			if (newPos instanceof Position) {
+				area = markDirty(((Position) newPos).getX(),
+						((Position) newPos).getY(), area);
+			}
+		}
+		if (area != null) {
+			repaint(area);
+		}
 	}
 }
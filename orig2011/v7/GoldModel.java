@@ -4,14 +4,14 @@ import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Random;
 
 /**
  * Sample game for illustration. Intentionally stupid; more interesting
  * games to be provided by students.
  * <p>
- * Initially 20 gold coins are randomly placed in the matrix. The red gold
+ * Initially 20 gold coins, or the configured number, are randomly placed
+ * in the matrix. The red gold
  * collector aims to collect these coins which disappear after collection. Each
  * coin is randomly moved to a new position every n moves, where n is the number
  * of remaining coins. The game is won when all coins are collected and lost when
@@ -43,11 +43,19 @@ public class GoldModel implements GameModel {
 		}
 	}
 
-	private static final int COIN_START_AMOUNT = 20;
-
 	private PropertyChangeSupport observable = new PropertyChangeSupport(this);
 
-	private final GameTile[][] gameboardState;
+	private final TileChangeSupport tileListeners = new TileChangeSupport();
+
+	/** Collects the changes of each update for the change set listeners. */
+	private final ChangeSetSupport changes;
+
+	/** The tile of every cell, indexed x * height + y. */
+	private final GameTile[] gameboardState;
+
+	/** The size of the gameboard. */
+	private final int width;
+	private final int height;
 
 	private static final int UPDATE_SPEED = 150;
 
@@ -61,27 +69,29 @@ public class GoldModel implements GameModel {
 	 */
 
 	/** Graphical representation of a coin. */
-	private static final GameTile COIN_TILE = new RoundTile(new Color(255, 215,
-			0),
-			new Color(255, 255, 0), 2.0);
+	private static final GameTile COIN_TILE = new CachedTile(new RoundTile(
+			new Color(255, 215, 0),
+			new Color(255, 255, 0), 2.0));
 
 	/** Graphical representation of the collector */
-	private static final GameTile COLLECTOR_TILE = new RoundTile(Color.BLACK,
-			Color.RED, 2.0);
+	private static final GameTile COLLECTOR_TILE = new CachedTile(
+			new RoundTile(Color.BLACK, Color.RED, 2.0));
 
 	/** Graphical representation of a blank tile. */
 	private static final GameTile BLANK_TILE = new BlankTile();
 
-	/** A list containing the positions of all coins. */
-	private final List<Position> coins = new ArrayList<Position>();
-	/*
-	 * The declaration and object creation above uses the new language feature
-	 * 'generic types'. It can be declared in the old way like this:
-	 * private java.util.List coins = new ArrayList();
-	 * This will however result in a warning at compilation
-	 * "Position" in this case is the type of the objects that are going
-	 * to be used in the List
-	 */
+	/** The positions of all coins, oldest first. */
+	private final CoinStore coins;
+
+	/** The blank cells, where new coins may be placed. */
+	private final FreeCellSet freeCells;
+
+	/** Places the coins. */
+	private final Random random;
+	private final long seed;
+
+	/** The positions of the cells. */
+	private final PositionTable positions;
 
 	/** The position of the collector. */
 	private Position collectorPos;
@@ -96,53 +106,71 @@ public class GoldModel implements GameModel {
 	 * Create a new model for the gold game.
 	 */
 	public GoldModel() {
-		this.gameboardState =
-				new GameTile[GameUtils.getGameboardSize().width][GameUtils.getGameboardSize().height];
-		Dimension size = GameUtils.getGameboardSize();
+		this(GameConfig.getDefault());
+	}
+
+	/**
+	 * Create a new model for the gold game on a board of the configured
+	 * size, with the configured number of coins. The coins are placed by a
+	 * generator with the configured seed, or a random seed if there is
+	 * none.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the coins and the collector don't fit on the board.
+	 */
+	public GoldModel(final GameConfig config) {
+		this.width = config.getWidth();
+		this.height = config.getHeight();
+		int coinCount = config.getCoinCount();
+		if (coinCount >= this.width * this.height) {
+			throw new IllegalArgumentException("Too many coins for the board: "
+					+ config);
+		}
+		this.coins = new CoinStore(this.width, this.height, coinCount);
+		this.freeCells = new FreeCellSet(this.width * this.height);
+		this.seed = config.hasSeed() ? config.getSeed() : new Random().nextLong();
+		this.random = new Random(this.seed);
+		this.changes = new ChangeSetSupport(this, this.height);
+		this.gameboardState = new GameTile[this.width * this.height];
+		this.positions = new PositionTable(this.width, this.height);
 
 		// Blank out the whole gameboard
-		for (int i = 0; i < size.width; i++) {
-			for (int j = 0; j < size.height; j++) {
+		for (int i = 0; i < this.width; i++) {
+			for (int j = 0; j < this.height; j++) {
 				setGameboardState(i, j, BLANK_TILE);
 			}
 		}
 
 		// Insert the collector in the middle of the gameboard.
-		this.collectorPos = new Position(size.width / 2, size.height / 2);
+		this.collectorPos = this.positions.get(this.width / 2, this.height / 2);
 		setGameboardState(this.collectorPos, COLLECTOR_TILE);
 
 		// Insert coins into the gameboard.
-		for (int i = 0; i < COIN_START_AMOUNT; i++) {
+		for (int i = 0; i < coinCount; i++) {
 			addCoin();
 		}
 	}
 
 	/**
-	 * Insert another coin into the gameboard.
+	 * Insert another coin into the gameboard, on a blank cell picked at
+	 * random. Does nothing if there is no blank cell.
 	 */
 	private void addCoin() {
-		Position newCoinPos;
-		Dimension size = GameUtils.getGameboardSize();
-		// Loop until a blank position is found and ...
-		do {
-			newCoinPos = new Position((int) (Math.random() * size.width),
-										(int) (Math.random() * size.height));
-		} while (!isPositionEmpty(newCoinPos));
-
-		// ... add a new coin to the empty tile.
-		setGameboardState(newCoinPos, COIN_TILE);
-		this.coins.add(newCoinPos);
+		int cell = this.freeCells.sample(this.random);
+		if (cell < 0) {
+			return;
+		}
+		int x = cell / this.height;
+		int y = cell % this.height;
+		setGameboardState(x, y, COIN_TILE);
+		this.coins.add(x, y);
 	}
 
 	/**
-	 * Return whether the specified position is empty.
-	 *
-	 * @param pos
-	 *            The position to test.
-	 * @return true if position is empty.
+	 * @return The seed of the generator placing the coins.
 	 */
-	private boolean isPositionEmpty(final Position pos) {
-		return (getGameboardState(pos) == BLANK_TILE);
+	public long getSeed() {
+		return this.seed;
 	}
 
 	/**
@@ -168,24 +196,42 @@ public class GoldModel implements GameModel {
 				// Don't change direction if another key is pressed
 				break;
 		}
-		this.observable.firePropertyChange("Direction", oldDir, direction);
+		firePropertyChange("Direction", oldDir, direction);
 	}
 
 	/**
-	 * Get next position of the collector.
+	 * Get next position of the collector. Only a position outside the
+	 * board, which ends the game, is newly created.
 	 */
 	private Position getNextCollectorPos() {
-		return new Position(
-				this.collectorPos.getX() + this.direction.getXDelta(),
-				this.collectorPos.getY() + this.direction.getYDelta());
+		int x = this.collectorPos.getX() + this.direction.getXDelta();
+		int y = this.collectorPos.getY() + this.direction.getYDelta();
+		if (x < 0 || x >= this.width || y < 0 || y >= this.height) {
+			return new Position(x, y);
+		}
+		return this.positions.get(x, y);
 	}
 
 	public GameTile getGameboardState(final Position pos) {
 		return getGameboardState(pos.getX(), pos.getY());
 	}
 
+	public GameTile getPackedGameboardState(final int packed) {
+		return this.gameboardState[Position.unpackX(packed) * this.height
+				+ Position.unpackY(packed)];
+	}
+
+	public Position getPosition(final int x, final int y) {
+		return this.positions.get(x, y);
+	}
+
 	public GameTile getGameboardState(final int x, final int y) {
-		return this.gameboardState[x][y];
+		return this.gameboardState[x * this.height + y];
+	}
+
+	public void copyGameboardState(final GameTile[] dest) {
+		System.arraycopy(this.gameboardState, 0, dest, 0,
+				this.gameboardState.length);
 	}
 
 	/**
@@ -213,8 +259,16 @@ public class GoldModel implements GameModel {
 	protected void setGameboardState(final int x, final int y,
 									 final GameTile tile) {
 		GameTile oldTile = getGameboardState(x,y);
-		this.gameboardState[x][y] = tile;
-		this.observable.firePropertyChange("Tile:" + x + ":" + y, oldTile, tile);
+		this.gameboardState[x * this.height + y] = tile;
+		if (tile == BLANK_TILE) {
+			this.freeCells.add(x * this.height + y);
+		} else if (oldTile == BLANK_TILE) {
+			this.freeCells.remove(x * this.height + y);
+		}
+		this.tileListeners.fireTileChanged(x, y, oldTile, tile);
+		if (oldTile != tile) {
+			this.changes.tileChanged(x, y);
+		}
 	}
 
 	/**
@@ -226,40 +280,47 @@ public class GoldModel implements GameModel {
 	 */
 	@Override
 	public void gameUpdate(final int lastKey) throws GameOverException {
-		updateDirection(lastKey);
+		// Everything changed by this update reaches the change set
+		// listeners as one notification.
+		this.changes.begin();
+		try {
+			updateDirection(lastKey);
+
+			// Erase the previous position.
+			setGameboardState(this.collectorPos, BLANK_TILE);
+			// Change collector position.
+			this.collectorPos = getNextCollectorPos();
+
+			if (isOutOfBounds(this.collectorPos)) {
+				firePropertyChange("GameOver", false, true);
+				throw new GameOverException(this.score);
+			}
+			// Draw collector at new position.
+			setGameboardState(this.collectorPos, COLLECTOR_TILE);
 
-		// Erase the previous position.
-		setGameboardState(this.collectorPos, BLANK_TILE);
-		// Change collector position.
-		this.collectorPos = getNextCollectorPos();
+			// Remove the coin at the new collector position (if any)
+			if (this.coins.remove(this.collectorPos.getX(),
+					this.collectorPos.getY())) {
+				this.score++;
+			}
 
-		if (isOutOfBounds(this.collectorPos)) {
-			this.observable.firePropertyChange("GameOver", false, true);
-			throw new GameOverException(this.score);
-		}
-		// Draw collector at new position.
-		setGameboardState(this.collectorPos, COLLECTOR_TILE);
+			// Check if all coins are found
+			if (this.coins.isEmpty()) {
+				firePropertyChange("GameOver", false, true);
+				throw new GameOverException(this.score + 5);
 
-		// Remove the coin at the new collector position (if any)
-		if (this.coins.remove(this.collectorPos)) {
-			this.score++;
-		}
+			}
 
-		// Check if all coins are found
-		if (this.coins.isEmpty()) {
-			this.observable.firePropertyChange("GameOver", false, true);
-			throw new GameOverException(this.score + 5);
+			// Remove one of the coins
+			int oldCoin = this.coins.removeOldest();
+			setGameboardState(oldCoin / this.height, oldCoin % this.height,
+					BLANK_TILE);
 
+			// Add a new coin (simulating moving one coin)
+			addCoin();
+		} finally {
+			this.changes.commit();
 		}
-
-		// Remove one of the coins
-		Position oldCoinPos = this.coins.get(0);
-		this.coins.remove(0);
-		setGameboardState(oldCoinPos, BLANK_TILE);
-
-		// Add a new coin (simulating moving one coin)
-		addCoin();
-
 	}
 
 	/**
@@ -268,8 +329,8 @@ public class GoldModel implements GameModel {
 	 * @return <code>false</code> if the position is outside the playing field, <code>true</code> otherwise.
 	 */
 	private boolean isOutOfBounds(Position pos) {
-		return pos.getX() < 0 || pos.getX() >= GameUtils.getGameboardSize().width
-				|| pos.getY() < 0 || pos.getY() >= GameUtils.getGameboardSize().height;
+		return pos.getX() < 0 || pos.getX() >= this.width
+				|| pos.getY() < 0 || pos.getY() >= this.height;
 	}
 
 	public void addObserver(PropertyChangeListener observer) {
@@ -280,6 +341,56 @@ public class GoldModel implements GameModel {
 		observable.removePropertyChangeListener(observer);
 	}
 
+	public void addTileListener(ITileListener listener) {
+		tileListeners.addTileListener(listener);
+	}
+
+	public void removeTileListener(ITileListener listener) {
+		tileListeners.removeTileListener(listener);
+	}
+
+	public void addChangeSetListener(IChangeSetListener listener) {
+		changes.addChangeSetListener(listener);
+	}
+
+	public void removeChangeSetListener(IChangeSetListener listener) {
+		changes.removeChangeSetListener(listener);
+	}
+
+	/**
+	 * Notify the observers at once, and record the change for the change
+	 * set of the current update.
+	 */
+	private void firePropertyChange(final String name, final Object oldValue,
+			final Object newValue) {
+		this.observable.firePropertyChange(name, oldValue, newValue);
+		this.changes.propertyChanged(name, oldValue, newValue);
+	}
+
+	/**
+	 * Hashes the tiles of the board, the collector and the score.
+	 */
+	public long getStateHash() {
+		// FNV-1a over one code per tile.
+		long hash = 0xcbf29ce484222325L;
+		for (GameTile tile : this.gameboardState) {
+			int code = tile == BLANK_TILE ? 0 : tile == COIN_TILE ? 1 : 2;
+			hash = (hash ^ code) * 0x100000001b3L;
+		}
+		hash = (hash ^ this.collectorPos.getX()) * 0x100000001b3L;
+		hash = (hash ^ this.collectorPos.getY()) * 0x100000001b3L;
+		hash = (hash ^ this.direction.ordinal()) * 0x100000001b3L;
+		return (hash ^ this.score) * 0x100000001b3L;
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
 	public int getUpdateSpeed() {
 		return UPDATE_SPEED;
 	}
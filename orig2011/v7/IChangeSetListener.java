@@ -0,0 +1,17 @@
+package orig2011.v7;
+
+/**
+ * Listener receiving all changes of a game model made during one update
+ * as a single, coalesced change set.
+ */
+public interface IChangeSetListener {
+
+	/**
+	 * Called once after every model update which changed anything.
+	 *
+	 * @param changes
+	 *            The changes of the update. The object is reused for the
+	 *            next update, so it is only valid during this call.
+	 */
+	public void modelChanged(ChangeSet changes);
+}
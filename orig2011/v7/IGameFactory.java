@@ -19,4 +19,16 @@ public interface IGameFactory {
 	 *             if no such game
 	 */
 	public GameModel createGame(final String gameName);
+
+	/**
+	 * Returns a new model object for the game corresponding to its Name,
+	 * set up according to the given configuration.
+	 *
+	 * @param gameName
+	 *            The name of the game as given by getGameNames()
+	 * @throws IllegalArgumentException
+	 *             if no such game, or the game can't be played with this
+	 *             configuration
+	 */
+	public GameModel createGame(final String gameName, final GameConfig config);
 }
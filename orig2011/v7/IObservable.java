@@ -5,4 +5,8 @@ import java.beans.PropertyChangeListener;
 interface IObservable {
     public void addObserver(PropertyChangeListener observer);
     public void removeObserver(PropertyChangeListener observer);
+    public void addTileListener(ITileListener listener);
+    public void removeTileListener(ITileListener listener);
+    public void addChangeSetListener(IChangeSetListener listener);
+    public void removeChangeSetListener(IChangeSetListener listener);
 }
@@ -0,0 +1,26 @@
+package orig2011.v7;
+
+/**
+ * Listener for changes of single tiles of a game model.
+ *
+ * Unlike a PropertyChangeListener, the tile coordinates are passed as
+ * primitives, so no event objects or property names are created for the
+ * many tile changes of a game.
+ */
+public interface ITileListener {
+
+	/**
+	 * Called after the tile in logical position (x,y) of the gameboard has
+	 * changed.
+	 *
+	 * @param x
+	 *            Coordinate in the gameboard matrix.
+	 * @param y
+	 *            Coordinate in the gameboard matrix.
+	 * @param oldTile
+	 *            The tile before the change.
+	 * @param newTile
+	 *            The tile after the change.
+	 */
+	public void tileChanged(int x, int y, GameTile oldTile, GameTile newTile);
+}
@@ -0,0 +1,146 @@
+package orig2011.v7;
+
+import java.awt.event.KeyEvent;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded queue of key codes between one producing thread, such as the
+ * Swing event thread, and one consuming thread, such as the game thread.
+ *
+ * The keys are kept in a ring of ints, so nothing is boxed or allocated
+ * per key, and neither side ever blocks or takes a lock. The consumer and
+ * the producer dropping the oldest key both advance the head with
+ * compare-and-set; only the producer moves the tail.
+ */
+public class KeyQueue {
+
+	/** What to do with a key that doesn't fit. */
+	public enum OverflowPolicy {
+		/** Drop the oldest queued key to make room for the new one. */
+		DROP_OLDEST,
+		/** Drop the new key. */
+		DROP_NEWEST,
+		/**
+		 * Drop a direction key equal to the newest queued key. Only for
+		 * games where repeating a direction changes nothing, such as Gold,
+		 * whose collector keeps moving the last way it was steered; in
+		 * Reversi every arrow press moves the cursor. When full, drop the
+		 * oldest queued key.
+		 */
+		COALESCE
+	}
+
+	private final int[] keys;
+	private final int mask;
+	private final OverflowPolicy policy;
+
+	/** Index of the next key to take. */
+	private final AtomicLong head = new AtomicLong();
+
+	/** Index of the next free slot. Written by the producer only. */
+	private volatile long tail;
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * Creates a queue holding up to capacity keys.
+	 *
+	 * @param capacity
+	 *            The number of keys, rounded up to a power of two.
+	 */
+	public KeyQueue(final int capacity, final OverflowPolicy policy) {
+		if (capacity < 1 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		if (policy == null) {
+			throw new IllegalArgumentException("policy is null");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		this.keys = new int[size];
+		this.mask = size - 1;
+		this.policy = policy;
+	}
+
+	/**
+	 * Adds a key. Must only be called by the producing thread.
+	 *
+	 * @return false if a key was dropped.
+	 */
+	public boolean offer(final int key) {
+		long t = this.tail;
+		if (this.policy == OverflowPolicy.COALESCE && isDirectionKey(key)
+				&& t > this.head.get()
+				&& this.keys[(int) (t - 1) & this.mask] == key) {
+			this.dropped.incrementAndGet();
+			return false;
+		}
+		boolean droppedKey = false;
+		long h = this.head.get();
+		while (t - h >= this.keys.length) {
+			if (this.policy == OverflowPolicy.DROP_NEWEST) {
+				this.dropped.incrementAndGet();
+				return false;
+			}
+			// The consumer may take the oldest key meanwhile, that works too.
+			if (this.head.compareAndSet(h, h + 1)) {
+				this.dropped.incrementAndGet();
+				droppedKey = true;
+			}
+			h = this.head.get();
+		}
+		this.keys[(int) t & this.mask] = key;
+		this.tail = t + 1;
+		return !droppedKey;
+	}
+
+	/**
+	 * Takes the oldest key. Must only be called by the consuming thread.
+	 *
+	 * @return The key, or 0 if the queue is empty.
+	 */
+	public int poll() {
+		while (true) {
+			long h = this.head.get();
+			if (h >= this.tail) {
+				return 0;
+			}
+			int key = this.keys[(int) h & this.mask];
+			// Fails if the producer dropped this key while it was read.
+			if (this.head.compareAndSet(h, h + 1)) {
+				return key;
+			}
+		}
+	}
+
+	/**
+	 * Removes all queued keys. Must only be called by the consuming thread,
+	 * or while the producer is idle.
+	 */
+	public void clear() {
+		long t = this.tail;
+		long h = this.head.get();
+		while (h < t && !this.head.compareAndSet(h, t)) {
+			h = this.head.get();
+		}
+	}
+
+	/** @return The number of queued keys. */
+	public int size() {
+		return (int) Math.max(0, this.tail - this.head.get());
+	}
+
+	/** @return The number of keys dropped since the queue was created. */
+	public long getDropped() {
+		return this.dropped.get();
+	}
+
+	private static boolean isDirectionKey(final int key) {
+		return key == KeyEvent.VK_LEFT
+				|| key == KeyEvent.VK_UP
+				|| key == KeyEvent.VK_RIGHT
+				|| key == KeyEvent.VK_DOWN;
+	}
+}
@@ -0,0 +1,124 @@
+package orig2011.v7;
+
+import orig2011.v7.ReversiModel.Direction;
+import orig2011.v7.ReversiModel.PieceColor;
+import orig2011.v7.ReversiModel.Turn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps track of the legal moves of both sides on a Reversi board.
+ *
+ * Whenever a cell changes, only the cells whose legality may depend on it
+ * are evaluated again: walking outwards from the changed cell in each
+ * direction, the first empty cell is the only one which can see the
+ * changed cell along that ray.
+ */
+class LegalMoveSet {
+
+	private static final Direction[] DIRECTIONS = {
+			Direction.EAST, Direction.SOUTHEAST, Direction.SOUTH,
+			Direction.SOUTHWEST, Direction.WEST, Direction.NORTHWEST,
+			Direction.NORTH, Direction.NORTHEAST };
+
+	private final ReversiBoard board;
+	private final PositionTable positions;
+	private final int width;
+	private final int height;
+
+	/** Legality flags per cell, indexed by Turn ordinal. */
+	private final boolean[][] legal;
+
+	/** The legal moves as positions, indexed by Turn ordinal. */
+	private final List<Set<Position>> moves;
+
+	/** Read-only views of the sets above. */
+	private final List<Set<Position>> views;
+
+	/**
+	 * Creates a move set for the given board and evaluates every cell once.
+	 * The sets hold positions taken from the given table.
+	 */
+	LegalMoveSet(final ReversiBoard board, final PositionTable positions) {
+		this.board = board;
+		this.positions = positions;
+		this.width = board.getWidth();
+		this.height = board.getHeight();
+		this.legal = new boolean[2][this.width * this.height];
+		this.moves = new ArrayList<Set<Position>>(2);
+		this.views = new ArrayList<Set<Position>>(2);
+		for (int i = 0; i < 2; i++) {
+			Set<Position> set = new HashSet<Position>();
+			this.moves.add(set);
+			this.views.add(Collections.unmodifiableSet(set));
+		}
+		for (int x = 0; x < this.width; x++) {
+			for (int y = 0; y < this.height; y++) {
+				evaluate(x, y);
+			}
+		}
+	}
+
+	/**
+	 * Must be called after the piece at (x,y) has been changed on the board.
+	 */
+	void cellChanged(final int x, final int y) {
+		evaluate(x, y);
+		for (Direction d : DIRECTIONS) {
+			int cx = x + d.getXDelta();
+			int cy = y + d.getYDelta();
+			while (cx >= 0 && cx < this.width && cy >= 0 && cy < this.height) {
+				if (this.board.get(cx, cy) == PieceColor.EMPTY) {
+					evaluate(cx, cy);
+					break;
+				}
+				cx += d.getXDelta();
+				cy += d.getYDelta();
+			}
+		}
+	}
+
+	private void evaluate(final int x, final int y) {
+		update(Turn.BLACK, x, y, this.board.isLegal(PieceColor.BLACK, x, y));
+		update(Turn.WHITE, x, y, this.board.isLegal(PieceColor.WHITE, x, y));
+	}
+
+	private void update(final Turn turn, final int x, final int y,
+			final boolean isLegal) {
+		int side = turn.ordinal();
+		int cell = y * this.width + x;
+		if (this.legal[side][cell] != isLegal) {
+			this.legal[side][cell] = isLegal;
+			if (isLegal) {
+				this.moves.get(side).add(this.positions.get(x, y));
+			} else {
+				this.moves.get(side).remove(this.positions.get(x, y));
+			}
+		}
+	}
+
+	/**
+	 * @return Whether the side may play at (x,y).
+	 */
+	boolean isLegal(final Turn turn, final int x, final int y) {
+		return this.legal[turn.ordinal()][y * this.width + x];
+	}
+
+	/**
+	 * @return Whether the side has any legal move.
+	 */
+	boolean hasMoves(final Turn turn) {
+		return !this.moves.get(turn.ordinal()).isEmpty();
+	}
+
+	/**
+	 * @return A read-only, live view of the legal moves of the side.
+	 */
+	Set<Position> getMoves(final Turn turn) {
+		return this.views.get(turn.ordinal());
+	}
+}
@@ -0,0 +1,207 @@
+package orig2011.v7;
+
+import orig2011.v7.ReversiModel.BoardType;
+import orig2011.v7.ReversiModel.PieceColor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs ReversiSearch on several threads at once (Lazy SMP).
+ *
+ * Every thread searches its own copy of the position with iterative
+ * deepening, and all of them share one transposition table. The helper
+ * threads mostly help by filling the table for the main thread; every
+ * other helper starts one iteration deeper so the threads spread out over
+ * different depths. When the main thread is done, the helpers are stopped
+ * and the result of the deepest completed iteration is used.
+ */
+public class ParallelReversiSearch {
+
+	private final TranspositionTable table;
+	private final ReversiSearch[] workers;
+
+	/** Runs the helper threads, null when searching on a single thread. */
+	private final ForkJoinPool pool;
+
+	private long nodes;
+	private int completedDepth;
+	private int score;
+	private long elapsedNanos;
+
+	/**
+	 * Creates a search on the given number of threads.
+	 *
+	 * @param table
+	 *            The table shared by all threads, or null to search
+	 *            without one.
+	 */
+	public ParallelReversiSearch(final int width, final int height,
+			final TranspositionTable table, final int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Invalid thread count: "
+					+ threads);
+		}
+		this.table = table;
+		this.workers = new ReversiSearch[threads];
+		for (int i = 0; i < threads; i++) {
+			this.workers[i] = new ReversiSearch(width, height, table);
+		}
+		this.pool = threads > 1 ? new ForkJoinPool(threads - 1) : null;
+	}
+
+	/**
+	 * Searches for the best move of the given color.
+	 *
+	 * @see ReversiSearch#search(ReversiBoard, PieceColor, long, int)
+	 */
+	public int search(final ReversiBoard board, final PieceColor color,
+			final long budgetNanos, final int maxDepth) {
+		long start = System.nanoTime();
+		if (this.table != null) {
+			this.table.newSearch();
+		}
+
+		final AtomicBoolean stop = new AtomicBoolean();
+		List<Future<Integer>> helpers = new ArrayList<Future<Integer>>(
+				this.workers.length - 1);
+		for (int i = 1; i < this.workers.length; i++) {
+			final ReversiSearch worker = this.workers[i];
+			final ReversiBoard copy = board.copy();
+			final int firstDepth = 1 + (i & 1);
+			helpers.add(this.pool.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					return Integer.valueOf(worker.search(copy, color,
+							budgetNanos, firstDepth, maxDepth, stop));
+				}
+			}));
+		}
+
+		int bestMove = this.workers[0].search(board.copy(), color,
+				budgetNanos, 1, maxDepth, stop);
+		ReversiSearch best = this.workers[0];
+		stop.set(true);
+
+		this.nodes = this.workers[0].getNodes();
+		for (int i = 1; i < this.workers.length; i++) {
+			int move = join(helpers.get(i - 1));
+			ReversiSearch helper = this.workers[i];
+			this.nodes += helper.getNodes();
+			if (helper.getCompletedDepth() > best.getCompletedDepth()) {
+				best = helper;
+				bestMove = move;
+			}
+		}
+		this.completedDepth = best.getCompletedDepth();
+		this.score = best.getScore();
+		this.elapsedNanos = System.nanoTime() - start;
+		return bestMove;
+	}
+
+	private static int join(final Future<Integer> helper) {
+		try {
+			return helper.get().intValue();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return -1;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Search thread failed",
+					e.getCause());
+		}
+	}
+
+	/** @return The number of threads searching. */
+	public int getThreads() {
+		return this.workers.length;
+	}
+
+	/** @return The number of nodes visited by all threads in the last search. */
+	public long getNodes() {
+		return this.nodes;
+	}
+
+	/** @return The deepest iteration completed by the last search. */
+	public int getCompletedDepth() {
+		return this.completedDepth;
+	}
+
+	/** @return The score of the best move of the last search. */
+	public int getScore() {
+		return this.score;
+	}
+
+	/** @return The duration of the last search in nanoseconds. */
+	public long getElapsedNanos() {
+		return this.elapsedNanos;
+	}
+
+	/** @return The node throughput of all threads in the last search. */
+	public long getNodesPerSecond() {
+		if (this.elapsedNanos <= 0) {
+			return 0;
+		}
+		return this.nodes * 1000000000L / this.elapsedNanos;
+	}
+
+	/**
+	 * Stops the helper threads. The search can't be used afterwards.
+	 */
+	public void shutdown() {
+		if (this.pool != null) {
+			this.pool.shutdown();
+		}
+	}
+
+	/**
+	 * Reports the speedup of a parallel search over a single thread when
+	 * searching the starting position to a fixed depth.
+	 *
+	 * Usage: ParallelReversiSearch [depth] [threads] [table bits]
+	 */
+	public static void main(final String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int threads = args.length > 1 ? Integer.parseInt(args[1])
+				: Runtime.getRuntime().availableProcessors();
+		int tableBits = args.length > 2 ? Integer.parseInt(args[2]) : 22;
+
+		ReversiBoard board = new ReversiModel(BoardType.BITBOARD).copyBoard();
+
+		// Warm up the JIT so the single thread run isn't penalised.
+		fixedDepthSearch(board, Math.max(1, depth - 2), threads, tableBits);
+
+		ParallelReversiSearch single =
+				fixedDepthSearch(board, depth, 1, tableBits);
+		ParallelReversiSearch parallel =
+				fixedDepthSearch(board, depth, threads, tableBits);
+		report(single);
+		report(parallel);
+		System.out.println("Speedup at depth " + depth + " with " + threads
+				+ " threads: " + ((double) single.getElapsedNanos()
+						/ parallel.getElapsedNanos()));
+	}
+
+	private static ParallelReversiSearch fixedDepthSearch(
+			final ReversiBoard board, final int depth, final int threads,
+			final int tableBits) {
+		ParallelReversiSearch search = new ParallelReversiSearch(
+				board.getWidth(), board.getHeight(),
+				new TranspositionTable(tableBits), threads);
+		search.search(board, PieceColor.BLACK, Long.MAX_VALUE, depth);
+		search.shutdown();
+		return search;
+	}
+
+	private static void report(final ParallelReversiSearch search) {
+		System.out.println(search.getThreads() + " thread(s): depth "
+				+ search.getCompletedDepth() + ", "
+				+ search.getNodes() + " nodes in "
+				+ search.getElapsedNanos() / 1000000 + " ms, "
+				+ search.getNodesPerSecond() + " nodes/s");
+	}
+}
@@ -2,6 +2,10 @@ package orig2011.v7;
 
 /**
  * Immutable class describing integer 2D-points.
+ *
+ * Code running every update can avoid creating positions by taking them
+ * from the PositionTable of the board, or by passing cells as ints packed
+ * with pack().
  * 
  * @author evensen
  * 
@@ -18,6 +22,29 @@ public class Position {
 		this.y = y;
 	}
 
+	/**
+	 * Packs the coordinates of a gameboard cell into one int, x in the high
+	 * half and y in the low half. Both must be in the range 0 to 65535,
+	 * which holds for every cell of a board allowed by GameConfig.
+	 */
+	public static int pack(final int x, final int y) {
+		return (x << 16) | (y & 0xFFFF);
+	}
+
+	/**
+	 * @return The x coordinate of a packed cell.
+	 */
+	public static int unpackX(final int packed) {
+		return packed >>> 16;
+	}
+
+	/**
+	 * @return The y coordinate of a packed cell.
+	 */
+	public static int unpackY(final int packed) {
+		return packed & 0xFFFF;
+	}
+
 	/**
 	 * @return The x value of the coordinate.
 	 */
@@ -32,9 +59,18 @@ public class Position {
 		return this.y;
 	}
 
+	/**
+	 * @return The coordinates packed as pack() does.
+	 */
+	public int getPacked() {
+		return pack(this.x, this.y);
+	}
+
 	@Override
 	public int hashCode() {
-		return 23456789 * this.x + 56789123 * this.y;
+		// Fibonacci hashing spreads neighbouring cells over the whole range.
+		int h = ((this.x << 16) ^ this.y) * 0x9E3779B9;
+		return h ^ (h >>> 16);
 	}
 
 	@Override
@@ -0,0 +1,63 @@
+package orig2011.v7;
+
+/**
+ * The positions of the cells of one gameboard, created once and shared, so
+ * that code running every update doesn't have to allocate positions.
+ *
+ * The positions of boards with at most MAX_INTERNED_CELLS cells are all
+ * created up front. On larger boards the table would cost more memory than
+ * it saves, and get() creates a new position on every call.
+ */
+public final class PositionTable {
+
+	/** The largest board whose positions are kept. */
+	public static final int MAX_INTERNED_CELLS = 1 << 16;
+
+	private final int width;
+	private final int height;
+
+	/** The position of every cell, indexed x * height + y, or null. */
+	private final Position[] positions;
+
+	/**
+	 * Creates the positions of a board of the given size.
+	 */
+	public PositionTable(final int width, final int height) {
+		this.width = width;
+		this.height = height;
+		if ((long) width * height <= MAX_INTERNED_CELLS) {
+			this.positions = new Position[width * height];
+			for (int x = 0; x < width; x++) {
+				for (int y = 0; y < height; y++) {
+					this.positions[x * height + y] = new Position(x, y);
+				}
+			}
+		} else {
+			this.positions = null;
+		}
+	}
+
+	/**
+	 * @return The position of the cell (x,y). On boards of at most
+	 *         MAX_INTERNED_CELLS cells, always the same instance.
+	 * @throws IndexOutOfBoundsException
+	 *             if (x,y) is outside the board.
+	 */
+	public Position get(final int x, final int y) {
+		if (x < 0 || x >= this.width || y < 0 || y >= this.height) {
+			throw new IndexOutOfBoundsException("(" + x + "," + y
+					+ ") is outside the board");
+		}
+		if (this.positions == null) {
+			return new Position(x, y);
+		}
+		return this.positions[x * this.height + y];
+	}
+
+	/**
+	 * @return The position of a cell given as Position.pack(x, y).
+	 */
+	public Position get(final int packed) {
+		return get(Position.unpackX(packed), Position.unpackY(packed));
+	}
+}
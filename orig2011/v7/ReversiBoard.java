@@ -0,0 +1,80 @@
+package orig2011.v7;
+
+import orig2011.v7.ReversiModel.PieceColor;
+
+/**
+ * Storage and rule evaluation for the discs of a Reversi board.
+ *
+ * Cells are addressed either by (x,y) coordinates or by a cell index
+ * <code>y * width + x</code>, which is what the bulk methods use to
+ * report cells without allocating Position objects.
+ */
+public interface ReversiBoard {
+
+	/** @return The number of columns of the board. */
+	public int getWidth();
+
+	/** @return The number of rows of the board. */
+	public int getHeight();
+
+	/**
+	 * Returns the piece in logical position (x,y) of the board.
+	 */
+	public PieceColor get(final int x, final int y);
+
+	/**
+	 * Sets the piece in logical position (x,y) of the board. No rules are
+	 * applied.
+	 */
+	public void set(final int x, final int y, final PieceColor color);
+
+	/**
+	 * Return whether a disc of the given color may be placed at (x,y),
+	 * i.e. whether the cell is empty and at least one opponent disc would
+	 * be turned over.
+	 */
+	public boolean isLegal(final PieceColor color, final int x, final int y);
+
+	/**
+	 * Return whether the given color has any legal move on the board.
+	 */
+	public boolean hasLegalMove(final PieceColor color);
+
+	/**
+	 * Collects the discs which would be turned over if a disc of the given
+	 * color was placed at (x,y). The board itself is not changed.
+	 *
+	 * @param cells
+	 *            Receives the cell indices of the discs to turn over. Must
+	 *            be able to hold width + height + 2 * min(width, height)
+	 *            entries, one line of discs per direction.
+	 * @return The number of discs to turn over, 0 if the move is illegal.
+	 */
+	public int getFlips(final PieceColor color, final int x, final int y,
+			final int[] cells);
+
+	/**
+	 * Collects all cells where a disc of the given color may be placed.
+	 *
+	 * @param cells
+	 *            Receives the cell indices of the legal moves. Must be able
+	 *            to hold width * height entries.
+	 * @return The number of legal moves.
+	 */
+	public int getLegalMoves(final PieceColor color, final int[] cells);
+
+	/**
+	 * @return The number of discs of the given color on the board.
+	 */
+	public int count(final PieceColor color);
+
+	/**
+	 * @return The Zobrist hash of the discs on the board, see Zobrist.
+	 */
+	public long getHash();
+
+	/**
+	 * @return An independent copy of this board.
+	 */
+	public ReversiBoard copy();
+}
@@ -1,17 +1,26 @@
 package orig2011.v7;
 
+import orig2011.v7.ReversiModel.BoardType;
+import orig2011.v7.ReversiModel.Turn;
+
+import java.awt.GraphicsEnvironment;
+
 /**
  * Factory class for available games.
  */
 public class ReversiFactory implements IGameFactory {
 
+	/** Thinking time per move of the computer players. */
+	private static final long AI_BUDGET_MILLIS = 1000;
+
 	/**
 	 * Returns an array with names of games this factory can create. Used by GUI
 	 * list availible games.
 	 */
 	@Override
 	public String[] getGameNames() {
-		return new String[] { "Gold", "Reversi"};
+		return new String[] { "Gold", "Reversi", "Reversi vs AI",
+				"Reversi AI vs AI" };
 	}
 
 	/**
@@ -24,14 +33,63 @@ public class ReversiFactory implements IGameFactory {
 	 */
 	@Override
 	public GameModel createGame(final String gameName) {
+		return createGame(gameName, GameConfig.getDefault());
+	}
+
+	/**
+	 * Returns a new model object for the game corresponding to its Name,
+	 * on a board of the configured size.
+	 *
+	 * @param gameName
+	 *            The name of the game as given by getGameNames()
+	 * @throws IllegalArgumentException
+	 *             if no such game
+	 */
+	@Override
+	public GameModel createGame(final String gameName, final GameConfig config) {
 		if (gameName.equals("Gold")) {
-			return new GoldModel();
+			return new GoldModel(config);
 		} else if (gameName.equals("Reversi")) {
-			ReversiModel model =  new ReversiModel();
-			model.addObserver(new ReversiScoreView());
+			ReversiModel model =  new ReversiModel(BoardType.ARRAY, config);
+			addScoreView(model);
+			return model;
+		} else if (gameName.equals("Reversi vs AI")) {
+			ReversiModel model = new ReversiModel(searchBoardType(config),
+					config);
+			model.setPlayer(Turn.WHITE, new AlphaBetaPlayer(AI_BUDGET_MILLIS));
+			addScoreView(model);
+			return model;
+		} else if (gameName.equals("Reversi AI vs AI")) {
+			ReversiModel model = new ReversiModel(searchBoardType(config),
+					config);
+			model.setPlayer(Turn.BLACK, new AlphaBetaPlayer(AI_BUDGET_MILLIS));
+			model.setPlayer(Turn.WHITE, new AlphaBetaPlayer(AI_BUDGET_MILLIS));
+			addScoreView(model);
 			return model;
 		}
 
 		throw new IllegalArgumentException("No such game: " + gameName);
 	}
+
+	/**
+	 * The computer players search fastest on a bitboard, if the board fits
+	 * in one.
+	 */
+	private static BoardType searchBoardType(final GameConfig config) {
+		if (config.getWidth() * config.getHeight()
+				<= BitboardReversiBoard.MAX_CELLS) {
+			return BoardType.BITBOARD;
+		}
+		return BoardType.ARRAY;
+	}
+
+	/**
+	 * Show the score of the game in a separate window, unless running
+	 * without a display.
+	 */
+	private static void addScoreView(final ReversiModel model) {
+		if (!GraphicsEnvironment.isHeadless()) {
+			model.addChangeSetListener(new ReversiScoreView());
+		}
+	}
 }
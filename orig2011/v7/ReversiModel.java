@@ -4,6 +4,10 @@ import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
 
 /**
  * A somewhat defective implementation of the game Reversi. The purpose
@@ -60,41 +64,167 @@ public class ReversiModel implements GameModel {
 		}
 	}
 
-	/** Graphical representation of a coin. */
+	/** The available representations of the gameboard. */
+	public enum BoardType {
+		/** A matrix of pieces, works for any board size. */
+		ARRAY,
+		/** Packed bit masks, for boards of at most 64 cells. */
+		BITBOARD
+	}
+
+	/**
+	 * Graphical representation of a coin. The tiles of the cells are
+	 * cached as images, so painting a cell is an image copy.
+	 */
 	private static final GameTile blackTile = new RoundTile(Color.BLACK,
 			Color.BLACK, 1.0, 0.8);
 	private static final GameTile whiteTile = new RoundTile(Color.BLACK,
 			Color.WHITE, 1.0, 0.8);
-	private static final GameTile blankTile = new SquareTile(Color.BLACK,
-			new Color(0, 200, 0), 2.0);
-	private static final GameTile whiteGridTile = new CompositeTile(blankTile,
-			whiteTile);
-	private static final GameTile blackGridTile = new CompositeTile(blankTile,
-			blackTile);
+	private static final GameTile blankTile = new CachedTile(new SquareTile(
+			Color.BLACK, new Color(0, 200, 0), 2.0));
+	private static final GameTile whiteGridTile = new CachedTile(
+			new CompositeTile(blankTile, whiteTile));
+	private static final GameTile blackGridTile = new CachedTile(
+			new CompositeTile(blankTile, blackTile));
 	private static final GameTile cursorRedTile = new CrossTile(Color.RED, 2.0);
 	private static final GameTile cursorBlackTile = new RoundTile(Color.RED,
 			new Color(0, 50, 0), 2.0, 0.8);
 	private static final GameTile cursorWhiteTile = new RoundTile(Color.RED,
 				new Color(210, 255, 210), 2.0, 0.8);
 
+	/*
+	 * The states of a cell with respect to the cursor: not under it, under
+	 * it where the side to move can't play, and under it where black or
+	 * white can play.
+	 */
+	private static final int NO_CURSOR = 0;
+	private static final int CURSOR_ILLEGAL = 1;
+	private static final int CURSOR_BLACK = 2;
+	private static final int CURSOR_WHITE = 3;
+
+	/**
+	 * The tile of every combination of piece and cursor state, indexed by
+	 * PieceColor ordinal and cursor state. Painting never creates tiles.
+	 */
+	private static final GameTile[][] tiles = createTiles();
+
+	private static GameTile[][] createTiles() {
+		GameTile[] cursors = { null, cursorRedTile, cursorBlackTile,
+				cursorWhiteTile };
+		GameTile[][] table = new GameTile[PieceColor.values().length][];
+		for (PieceColor color : PieceColor.values()) {
+			GameTile base;
+			if (color == PieceColor.BLACK) {
+				base = blackGridTile;
+			} else if (color == PieceColor.WHITE) {
+				base = whiteGridTile;
+			} else {
+				base = blankTile;
+			}
+			GameTile[] row = new GameTile[cursors.length];
+			row[NO_CURSOR] = base;
+			for (int c = NO_CURSOR + 1; c < cursors.length; c++) {
+				row[c] = new CachedTile(new CompositeTile(base, cursors[c]));
+			}
+			table[color.ordinal()] = row;
+		}
+		return table;
+	}
+
 	// The gameboard state
 	private Turn turn;
 	private Position cursorPos;
-	private final PieceColor[][] board;
+	private final ReversiBoard board;
+
+	/** The positions of the cells. */
+	private final PositionTable positions;
+
+	/**
+	 * The cursor state of the cell under the cursor, kept up to date when
+	 * the board, the cursor or the turn changes.
+	 */
+	private int cursorState = CURSOR_ILLEGAL;
+
+	/** Scratch buffer receiving the discs to turn over in a move. */
+	private final int[] flips;
+
+	/** The legal moves of both sides, kept up to date by setGameboardState. */
+	private final LegalMoveSet legalMoves;
 
 	private int whiteScore;
 	private int blackScore;
 	private final int width;
 	private final int height;
 	private boolean gameOver;
+
+	/**
+	 * The snapshot taken after every move, the first one of the starting
+	 * position. Moves after historyIndex have been taken back and can be
+	 * played again with redo().
+	 */
+	private final List<ReversiSnapshot> history =
+			new ArrayList<ReversiSnapshot>();
+	private int historyIndex = -1;
+
+	/** Rows changed since the snapshot at historyIndex. */
+	private final boolean[] changedRows;
 	private static final int UPDATE_SPEED = 0;
 
+	/** Update interval used when a computer player takes part. */
+	private static final int AI_UPDATE_SPEED = 100;
+
+	/** The computer players, indexed by Turn ordinal. null means human. */
+	private final ReversiPlayer[] players = new ReversiPlayer[2];
+
 	private PropertyChangeSupport observerable = new PropertyChangeSupport(this);
 
+	private final TileChangeSupport tileListeners = new TileChangeSupport();
+
+	/** Collects the changes of each update for the change set listeners. */
+	private final ChangeSetSupport changes;
+
 	public ReversiModel() {
-		this.width = Constants.getGameSize().width;
-		this.height = Constants.getGameSize().height;
-		this.board = new PieceColor[this.width][this.height];
+		this(BoardType.ARRAY);
+	}
+
+	/**
+	 * Create a new Reversi model using the given board representation.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the representation can't hold a board of this size.
+	 */
+	public ReversiModel(final BoardType boardType) {
+		this(boardType, GameConfig.getDefault());
+	}
+
+	/**
+	 * Create a new Reversi model of the configured size, using the given
+	 * board representation.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if either side of the board is shorter than 2, since the
+	 *             four starting bricks wouldn't fit, or if the
+	 *             representation can't hold a board of this size.
+	 */
+	public ReversiModel(final BoardType boardType, final GameConfig config) {
+		if (config.getWidth() < 2 || config.getHeight() < 2) {
+			throw new IllegalArgumentException("Board too small for Reversi: "
+					+ config.getWidth() + "x" + config.getHeight());
+		}
+		this.width = config.getWidth();
+		this.height = config.getHeight();
+		this.changes = new ChangeSetSupport(this, this.height);
+		if (boardType == BoardType.BITBOARD) {
+			this.board = new BitboardReversiBoard(this.width, this.height);
+		} else {
+			this.board = new ArrayReversiBoard(this.width, this.height);
+		}
+		// A move turns at most a line of discs in each direction.
+		this.flips = new int[this.width + this.height
+				+ 2 * Math.min(this.width, this.height)];
+		this.positions = new PositionTable(this.width, this.height);
+		this.changedRows = new boolean[this.height];
+		this.legalMoves = new LegalMoveSet(this.board, this.positions);
 
 		// Blank out the whole gameboard...
 		for (int i = 0; i < this.width; i++) {
@@ -120,7 +250,9 @@ public class ReversiModel implements GameModel {
 		this.gameOver = false;
 
 		// Insert the collector in the middle of the gameboard.
-		this.cursorPos = new Position(midX, midY);
+		this.cursorPos = this.positions.get(midX, midY);
+		updateCursorState();
+		addSnapshot();
 	}
 
 	public void addObserver(PropertyChangeListener observer) {
@@ -131,6 +263,65 @@ public class ReversiModel implements GameModel {
 		observerable.removePropertyChangeListener(observer);
 	}
 
+	public void addTileListener(ITileListener listener) {
+		tileListeners.addTileListener(listener);
+	}
+
+	public void removeTileListener(ITileListener listener) {
+		tileListeners.removeTileListener(listener);
+	}
+
+	public void addChangeSetListener(IChangeSetListener listener) {
+		changes.addChangeSetListener(listener);
+	}
+
+	public void removeChangeSetListener(IChangeSetListener listener) {
+		changes.removeChangeSetListener(listener);
+	}
+
+	/**
+	 * Notify the observers at once, and record the change for the change
+	 * set of the current update.
+	 */
+	private void firePropertyChange(final String name, final Object oldValue,
+			final Object newValue) {
+		observerable.firePropertyChange(name, oldValue, newValue);
+		changes.propertyChanged(name, oldValue, newValue);
+	}
+
+	/**
+	 * Let the computer play one side of the game. Must be called before the
+	 * game is started, since it changes the update speed of the model.
+	 *
+	 * @param turn
+	 *            The side to play.
+	 * @param player
+	 *            The computer player, or null for a human player.
+	 */
+	public void setPlayer(final Turn turn, final ReversiPlayer player) {
+		this.players[turn.ordinal()] = player;
+	}
+
+	/**
+	 * @return The computer player of the given side, or null for a human
+	 *         player.
+	 */
+	public ReversiPlayer getPlayer(final Turn turn) {
+		return this.players[turn.ordinal()];
+	}
+
+	/**
+	 * Stops the threads of the computer players. Called when the game is
+	 * over, and by the owner of the model when it abandons the game.
+	 */
+	public void shutdownPlayers() {
+		for (ReversiPlayer player : this.players) {
+			if (player != null) {
+				player.shutdown();
+			}
+		}
+	}
+
 	/**
 	 * Return whether the specified position is empty. If it only consists
 	 * of a blank tile, it is considered empty.
@@ -140,7 +331,7 @@ public class ReversiModel implements GameModel {
 	 * @return true if position is empty, false otherwise.
 	 */
 	private boolean isPositionEmpty(final Position pos) {
-		return this.board[pos.getX()][pos.getY()] == PieceColor.EMPTY;
+		return this.board.get(pos.getX(), pos.getY()) == PieceColor.EMPTY;
 	}
 
 	/**
@@ -169,120 +360,227 @@ public class ReversiModel implements GameModel {
 	}
 
 	private void tryPlay() {
+		if (this.players[this.turn.ordinal()] == null) {
+			play();
+		}
+	}
+
+	/**
+	 * Let the computer player of the current side choose a move and move
+	 * the cursor there before playing it.
+	 */
+	private void computerPlay(final ReversiPlayer player) {
+		Position move = player.chooseMove(copyBoard(), this.turn);
+		if (move != null) {
+			move = this.positions.get(move.getX(), move.getY());
+			firePropertyChange("cursorPos", this.cursorPos, move);
+			this.cursorPos = move;
+			updateCursorState();
+		}
+		play();
+	}
+
+	private void play() {
 		if (isPositionEmpty(this.cursorPos)) {
+			boolean moved = false;
 
 			if (canTurn(this.turn, this.cursorPos)) {
 				turnOver(this.turn, this.cursorPos);
-				setGameboardState(this.cursorPos, this.turn == Turn.BLACK
-						? PieceColor.BLACK
-						: PieceColor.WHITE);
-				System.out.println("Bong! White: " + this.whiteScore
-						+ "\tBlack: " + this.blackScore);
+				setGameboardState(this.cursorPos, colorOf(this.turn));
 
-				observerable.firePropertyChange("turn", this.turn, Turn.nextTurn(this.turn));
+				firePropertyChange("turn", this.turn, Turn.nextTurn(this.turn));
 				this.turn = Turn.nextTurn(this.turn);
+				updateCursorState();
+				moved = true;
 			}
 			if (!canTurn(this.turn)) {
 				if (!canTurn(Turn.nextTurn(this.turn))) {
 					this.gameOver = true;
-					observerable.firePropertyChange("gameOver", false, true);
-					return;
+					firePropertyChange("gameOver", false, true);
+					shutdownPlayers();
+				} else {
+					firePropertyChange("turn", this.turn,
+							Turn.nextTurn(this.turn));
+					this.turn = Turn.nextTurn(this.turn);
+					updateCursorState();
 				}
+			}
+			if (moved) {
+				addSnapshot();
+			}
+		}
 
-				observerable.firePropertyChange("turn", this.turn, Turn.nextTurn(this.turn));
-				this.turn = Turn.nextTurn(this.turn);
+	}
+
+	/**
+	 * Appends a snapshot of the current position to the history, dropping
+	 * the moves which were taken back. Rows which haven't changed since
+	 * the previous snapshot are shared with it.
+	 */
+	private void addSnapshot() {
+		ReversiSnapshot previous = this.historyIndex < 0 ? null
+				: this.history.get(this.historyIndex);
+		PieceColor[][] rows = new PieceColor[this.height][];
+		for (int y = 0; y < this.height; y++) {
+			if (previous != null && !this.changedRows[y]) {
+				rows[y] = previous.row(y);
+			} else {
+				PieceColor[] row = new PieceColor[this.width];
+				for (int x = 0; x < this.width; x++) {
+					row[x] = this.board.get(x, y);
+				}
+				rows[y] = row;
 			}
 		}
+		Arrays.fill(this.changedRows, false);
+		this.history.subList(this.historyIndex + 1, this.history.size())
+				.clear();
+		this.history.add(new ReversiSnapshot(rows, this.width, this.turn,
+				this.blackScore, this.whiteScore, this.gameOver,
+				this.cursorPos));
+		this.historyIndex++;
+	}
+
+	/**
+	 * Takes back the last move. Like gameUpdate, must only be called by
+	 * the thread updating the model. The cursor goes back to where it was
+	 * when the earlier position was reached, so the model is in the same
+	 * state, with the same state hash, as it was then.
+	 *
+	 * @return false if there was no move to take back.
+	 */
+	public boolean undo() {
+		if (this.historyIndex <= 0) {
+			return false;
+		}
+		ReversiSnapshot current = this.history.get(this.historyIndex);
+		this.historyIndex--;
+		restore(current, this.history.get(this.historyIndex));
+		return true;
+	}
+
+	/**
+	 * Plays the last move taken back again. Like gameUpdate, must only be
+	 * called by the thread updating the model.
+	 *
+	 * @return false if there was no move to play again.
+	 */
+	public boolean redo() {
+		if (this.historyIndex + 1 >= this.history.size()) {
+			return false;
+		}
+		ReversiSnapshot current = this.history.get(this.historyIndex);
+		this.historyIndex++;
+		restore(current, this.history.get(this.historyIndex));
+		return true;
+	}
+
+	public boolean canUndo() {
+		return this.historyIndex > 0;
+	}
 
+	public boolean canRedo() {
+		return this.historyIndex + 1 < this.history.size();
+	}
+
+	/**
+	 * @return The snapshot taken after the last move, or of the starting
+	 *         position if no move has been made.
+	 */
+	public ReversiSnapshot getSnapshot() {
+		return this.history.get(this.historyIndex);
+	}
+
+	/**
+	 * @return The snapshots of the starting position and after every move
+	 *         up to the current one. Moves taken back are not included.
+	 */
+	public List<ReversiSnapshot> getHistory() {
+		return new ArrayList<ReversiSnapshot>(this.history.subList(0,
+				this.historyIndex + 1));
+	}
+
+	/**
+	 * Changes the board from the position of one snapshot to the position
+	 * of another. Rows the snapshots share are skipped, unless they have
+	 * been changed on the board since. The listeners are told about the
+	 * changes as one change set.
+	 */
+	private void restore(final ReversiSnapshot from, final ReversiSnapshot to) {
+		this.changes.begin();
+		try {
+			for (int y = 0; y < this.height; y++) {
+				if (!this.changedRows[y] && from.sharesRow(to, y)) {
+					continue;
+				}
+				for (int x = 0; x < this.width; x++) {
+					setGameboardState(x, y, to.get(x, y));
+				}
+			}
+			Arrays.fill(this.changedRows, false);
+
+			firePropertyChange("blackScore", this.blackScore,
+					to.getBlackScore());
+			this.blackScore = to.getBlackScore();
+			firePropertyChange("whiteScore", this.whiteScore,
+					to.getWhiteScore());
+			this.whiteScore = to.getWhiteScore();
+			firePropertyChange("turn", this.turn, to.getTurn());
+			this.turn = to.getTurn();
+			firePropertyChange("gameOver", this.gameOver, to.isGameOver());
+			this.gameOver = to.isGameOver();
+			firePropertyChange("cursorPos", this.cursorPos, to.getCursor());
+			this.cursorPos = to.getCursor();
+			updateCursorState();
+		} finally {
+			this.changes.commit();
+		}
 	}
 
 	private void turnOver(final Turn turn, final Position cursorPos) {
-		if (isPositionEmpty(cursorPos)) {
-			PieceColor myColor =
-					(turn == Turn.BLACK ? PieceColor.BLACK : PieceColor.WHITE);
-			PieceColor opponentColor = PieceColor.opposite(myColor);
+		PieceColor myColor = colorOf(turn);
+		int count = this.board.getFlips(myColor, cursorPos.getX(),
+				cursorPos.getY(), this.flips);
+		if (count > 0) {
 			int blackResult = (turn == Turn.BLACK) ? 1 : -1;
 			int whiteResult = -blackResult;
 
 			int oldBlackScore = blackScore;
 			int oldWhiteScore = whiteScore;
 
-			this.blackScore += Math.max(0, blackResult);
-			this.whiteScore += Math.max(0, whiteResult);
-
-			observerable.firePropertyChange("blackScore", oldBlackScore, blackScore);
-			observerable.firePropertyChange("whiteScore", oldWhiteScore, whiteScore);
-
-			for (int i = 0; i < 8; i++) {
-				Direction d = Direction.values()[i];
-				int xDelta = d.getXDelta();
-				int yDelta = d.getYDelta();
-				int x = cursorPos.getX() + xDelta;
-				int y = cursorPos.getY() + yDelta;
-				boolean canTurn = false;
-				while (x >= 0 && x < this.width && y >= 0 && y < this.height) {
-					if (this.board[x][y] == opponentColor) {
-						canTurn = true;
-					} else if (this.board[x][y] == myColor && canTurn) {
-						// Move backwards to the cursor, flipping bricks
-						// as we go.
-						x -= xDelta;
-						y -= yDelta;
-						while (!(x == cursorPos.getX() && y == cursorPos.getY())) {
-							setGameboardState(x, y, myColor);
-							x -= xDelta;
-							y -= yDelta;
-							this.blackScore += blackResult;
-							this.whiteScore += whiteResult;
-						}
-						break;
-					} else {
-						break;
-					}
-					x += xDelta;
-					y += yDelta;
-				}
+			for (int i = 0; i < count; i++) {
+				setGameboardState(this.flips[i] % this.width,
+						this.flips[i] / this.width, myColor);
 			}
+
+			// One disc for the placed brick, and one per turned disc.
+			this.blackScore += Math.max(0, blackResult) + count * blackResult;
+			this.whiteScore += Math.max(0, whiteResult) + count * whiteResult;
+
+			firePropertyChange("blackScore", oldBlackScore, blackScore);
+			firePropertyChange("whiteScore", oldWhiteScore, whiteScore);
 		}
 	}
 
 	private boolean canTurn(final Turn turn) {
-		for (int x = 0; x < this.width; x++) {
-			for (int y = 0; y < this.height; y++) {
-				if (canTurn(turn, new Position(x, y))) {
-					return true;
-				}
-			}
-		}
-		return false;
+		return this.legalMoves.hasMoves(turn);
 	}
 
 	private boolean canTurn(final Turn turn, final Position cursorPos) {
-		if (isPositionEmpty(cursorPos)) {
-			PieceColor myColor =
-					(turn == Turn.BLACK ? PieceColor.BLACK : PieceColor.WHITE);
-			PieceColor opponentColor = PieceColor.opposite(myColor);
-			for (int i = 0; i < 8; i++) {
-				Direction d = Direction.values()[i];
-				int xDelta = d.getXDelta();
-				int yDelta = d.getYDelta();
-				int x = cursorPos.getX() + xDelta;
-				int y = cursorPos.getY() + yDelta;
-				boolean canTurn = false;
-				while (x >= 0 && x < this.width && y >= 0 && y < this.height) {
-					if (this.board[x][y] == opponentColor) {
-						canTurn = true;
-					} else if (this.board[x][y] == myColor && canTurn) {
-						return true;
-					} else {
-						break;
-					}
-					x += xDelta;
-					y += yDelta;
-				}
-			}
-		}
-		return false;
+		return this.legalMoves.isLegal(turn, cursorPos.getX(), cursorPos.getY());
+	}
+
+	/**
+	 * Returns the cells where the given side may currently place a disc.
+	 *
+	 * @return A read-only set which follows the changes of the board.
+	 */
+	public Set<Position> getLegalMoves(final Turn turn) {
+		return this.legalMoves.getMoves(turn);
+	}
+
+	private static PieceColor colorOf(final Turn turn) {
+		return turn == Turn.BLACK ? PieceColor.BLACK : PieceColor.WHITE;
 	}
 
 	/**
@@ -292,6 +590,36 @@ public class ReversiModel implements GameModel {
 		return this.turn;
 	}
 
+	/**
+	 * Returns a snapshot of the discs on the board, in the representation
+	 * used by this model. Later moves don't affect the snapshot, so it can
+	 * be searched by other threads.
+	 */
+	public ReversiBoard copyBoard() {
+		return this.board.copy();
+	}
+
+	/**
+	 * Returns the Zobrist hash of the current position, including the side
+	 * to move. The board part is updated incrementally by
+	 * setGameboardState.
+	 */
+	public long getPositionHash() {
+		long hash = this.board.getHash();
+		return this.turn == Turn.WHITE ? hash ^ Zobrist.SIDE_TO_MOVE : hash;
+	}
+
+	/**
+	 * Returns the position hash combined with the cursor position and
+	 * whether the game is over.
+	 */
+	public long getStateHash() {
+		long hash = getPositionHash();
+		hash ^= (this.cursorPos.getX() * 0x10001L + this.cursorPos.getY())
+				* 0x9E3779B97F4A7C15L;
+		return this.gameOver ? ~hash : hash;
+	}
+
 	/**
 	 * Accessor to black's current score.
 	 *
@@ -311,45 +639,103 @@ public class ReversiModel implements GameModel {
 	}
 
 	/**
-	 * Get next position of the collector.
+	 * Get next position of the cursor, kept on the board.
 	 */
 	private Position getNextCursorPos(final Direction dir) {
-		return new Position(this.cursorPos.getX()
-					+ dir.getXDelta(),
-					this.cursorPos.getY() + dir.getYDelta());
+		int nextX = Math.max(0, Math.min(
+				this.cursorPos.getX() + dir.getXDelta(), this.width - 1));
+		int nextY = Math.max(0, Math.min(
+				this.cursorPos.getY() + dir.getYDelta(), this.height - 1));
+		return this.positions.get(nextX, nextY);
 	}
 
 	public GameTile getGameboardState(Position pos) {
 		return getGameboardState(pos.getX(), pos.getY());
 	}
 
-	public GameTile getGameboardState(int x, int y) {
-		PieceColor colorTile = board[x][y];
-		GameTile gameTile;
+	public GameTile getPackedGameboardState(final int packed) {
+		return getGameboardState(Position.unpackX(packed),
+				Position.unpackY(packed));
+	}
 
-		if (colorTile == PieceColor.BLACK) {
-			gameTile = blackGridTile;
-		} else if (colorTile == PieceColor.WHITE) {
-			gameTile = whiteGridTile;
-		} else {
-			gameTile = blankTile;
+	public Position getPosition(final int x, final int y) {
+		return this.positions.get(x, y);
+	}
+
+	/**
+	 * @return The tile of a board cell holding the given piece.
+	 */
+	private static GameTile tileOf(final PieceColor color) {
+		return tiles[color.ordinal()][NO_CURSOR];
+	}
+
+	public GameTile getGameboardState(int x, int y) {
+		int state = NO_CURSOR;
+		if (x == this.cursorPos.getX() && y == this.cursorPos.getY()) {
+			state = this.cursorState;
 		}
+		return tiles[this.board.get(x, y).ordinal()][state];
+	}
 
-		if (x == cursorPos.getX() && y == cursorPos.getY()) {
-			if (canTurn(this.turn, this.cursorPos)) {
-				if (this.turn == Turn.BLACK) {
-					gameTile = new CompositeTile(gameTile, cursorBlackTile);
-				} else {
-					gameTile = new CompositeTile(gameTile, cursorWhiteTile);
-				}
-			} else {
-				gameTile = new CompositeTile(gameTile, cursorRedTile);
+	public void copyGameboardState(final GameTile[] dest) {
+		checkLength(dest.length);
+		int cell = 0;
+		for (int x = 0; x < this.width; x++) {
+			for (int y = 0; y < this.height; y++) {
+				dest[cell++] = tiles[this.board.get(x, y).ordinal()][NO_CURSOR];
 			}
 		}
+		int cursor = this.cursorPos.getX() * this.height + this.cursorPos.getY();
+		dest[cursor] = getGameboardState(this.cursorPos);
+	}
 
+	/**
+	 * Copies the pieces of the whole board into an array in one pass, the
+	 * PieceColor ordinal of (x,y) at index x * getHeight() + y.
+	 *
+	 * @param dest
+	 *            An array of at least getWidth() * getHeight() elements.
+	 * @throws IndexOutOfBoundsException
+	 *             if the array is too short.
+	 */
+	public void copyPieces(final byte[] dest) {
+		checkLength(dest.length);
+		int cell = 0;
+		for (int x = 0; x < this.width; x++) {
+			for (int y = 0; y < this.height; y++) {
+				dest[cell++] = (byte) this.board.get(x, y).ordinal();
+			}
+		}
+	}
 
-		return gameTile;
+	private void checkLength(final int length) {
+		if (length < this.width * this.height) {
+			throw new IndexOutOfBoundsException("Array of " + length
+					+ " elements can't hold " + this.width * this.height
+					+ " cells");
+		}
+	}
 
+	/**
+	 * Works out whether the side to move may play under the cursor. Called
+	 * whenever the board, the cursor or the turn changes, so that painting
+	 * the cursor cell doesn't evaluate the rules. When the state changes,
+	 * the cursor cell is reported as a changed tile, since it looks
+	 * different even if its piece is the same.
+	 */
+	private void updateCursorState() {
+		int oldState = this.cursorState;
+		if (!canTurn(this.turn, this.cursorPos)) {
+			this.cursorState = CURSOR_ILLEGAL;
+		} else if (this.turn == Turn.BLACK) {
+			this.cursorState = CURSOR_BLACK;
+		} else {
+			this.cursorState = CURSOR_WHITE;
+		}
+		if (this.cursorState != oldState) {
+			this.changes.tileChanged(this.cursorPos.getX(),
+					this.cursorPos.getY());
+		}
 	}
 
 	public void setGameboardState(Position pos, PieceColor tile) {
@@ -357,8 +743,20 @@ public class ReversiModel implements GameModel {
 	}
 
 	public void setGameboardState(int x, int y, PieceColor tile) {
-		observerable.firePropertyChange("board:" + x + ":" + y, board[x][y], tile);
-		board[x][y] = tile;
+		PieceColor oldTile = this.board.get(x, y);
+		if (oldTile != tile) {
+			this.board.set(x, y, tile);
+			this.legalMoves.cellChanged(x, y);
+			this.changedRows[y] = true;
+			if (this.cursorPos != null) {
+				updateCursorState();
+			}
+			if (this.tileListeners.hasListeners()) {
+				this.tileListeners.fireTileChanged(x, y, tileOf(oldTile),
+						tileOf(tile));
+			}
+			this.changes.tileChanged(x, y);
+		}
 	}
 
 	/**
@@ -370,52 +768,42 @@ public class ReversiModel implements GameModel {
 	 */
 	@Override
 	public void gameUpdate(final int lastKey) throws GameOverException {
-		if (!this.gameOver) {
-			Position nextCursorPos = getNextCursorPos(updateDirection(lastKey));
-			Dimension boardSize = GameUtils.getGameboardSize();
-			int nextX =
-					Math.max(0,
-							Math.min(nextCursorPos.getX(), boardSize.width - 1));
-			int nextY =
-					Math.max(
-							0,
-							Math.min(nextCursorPos.getY(), boardSize.height - 1));
-			nextCursorPos = new Position(nextX, nextY);
-			removeCursor(this.cursorPos);
-
-			observerable.firePropertyChange("cursorPos", this.cursorPos, nextCursorPos);
-
-			this.cursorPos = nextCursorPos;
-		} else {
-			throw new GameOverException(this.blackScore - this.whiteScore);
+		// Everything changed by this update reaches the change set
+		// listeners as one notification.
+		this.changes.begin();
+		try {
+			if (!this.gameOver) {
+				ReversiPlayer player = this.players[this.turn.ordinal()];
+				if (player != null) {
+					computerPlay(player);
+					return;
+				}
+				Position nextCursorPos = getNextCursorPos(updateDirection(lastKey));
+				firePropertyChange("cursorPos", this.cursorPos, nextCursorPos);
+
+				this.cursorPos = nextCursorPos;
+				updateCursorState();
+			} else {
+				throw new GameOverException(this.blackScore - this.whiteScore);
+			}
+		} finally {
+			this.changes.commit();
 		}
 	}
 
-	public int getUpdateSpeed() {
-		return UPDATE_SPEED;
+	public int getWidth() {
+		return this.width;
 	}
 
-	private void removeCursor(final Position oldCursorPos) {
-		GameTile t = getGameboardState(this.cursorPos);
-		if (t instanceof CompositeTile) {
-			CompositeTile c = (CompositeTile) t;
-			// Remove the top layer, if it is the cursor.
-			if (c.getTop() == cursorRedTile ||
-					c.getTop() == cursorWhiteTile ||
-					c.getTop() == cursorBlackTile) {
-
-				PieceColor bottom;
-				if (c.getBottom() == blackTile || c.getBottom() == blackGridTile) {
-					bottom = PieceColor.BLACK;
-				} else if (c.getBottom() == whiteTile || c.getBottom() == whiteGridTile) {
-					bottom = PieceColor.WHITE;
-				} else {
-					bottom = PieceColor.EMPTY;
-				}
+	public int getHeight() {
+		return this.height;
+	}
 
-				setGameboardState(oldCursorPos, bottom);
-			}
+	public int getUpdateSpeed() {
+		if (this.players[0] != null || this.players[1] != null) {
+			return AI_UPDATE_SPEED;
 		}
+		return UPDATE_SPEED;
 	}
 
 }
@@ -0,0 +1,238 @@
+package orig2011.v7;
+
+import orig2011.v7.ReversiModel.BoardType;
+import orig2011.v7.ReversiModel.PieceColor;
+
+/**
+ * Headless move generation test for the Reversi board representations.
+ *
+ * Counts the leaf nodes of the game tree to a fixed depth (perft). A pass
+ * counts as a move, and a finished game counts as a leaf at the depth
+ * where it ended. The counts from the standard 8x8 starting position are
+ * checked against known values, and every count is checked against the
+ * other board representation when both can hold the board.
+ *
+ * Usage: ReversiPerft depth [array|bitboard] [start|model|position]
+ *
+ * A position is given row by row with X for black, O for white and - for
+ * an empty cell, rows separated by '/', followed by the side to move:
+ * <code>"--------/--------/--------/---OX---/---XO---/--------/--------/--------
+ * X"</code>. "start" is the standard 8x8 position, "model" the starting
+ * position of ReversiModel.
+ */
+public class ReversiPerft {
+
+	/** Leaf counts from the standard 8x8 starting position, by depth. */
+	private static final long[] KNOWN_8X8 = { 1, 4, 12, 56, 244, 1396, 8200,
+			55092, 390216, 3005288, 24571284, 212258800L };
+
+	private static final String START_8X8 = "--------/--------/--------/"
+			+ "---OX---/---XO---/--------/--------/-------- X";
+
+	private final int width;
+	private final int height;
+
+	/** Scratch buffers per ply. */
+	private final int[][] moves;
+	private final int[] flips;
+
+	/**
+	 * Creates a perft counter for boards of the given size, searching at
+	 * most maxDepth plies deep.
+	 */
+	public ReversiPerft(final int width, final int height, final int maxDepth) {
+		this.width = width;
+		this.height = height;
+		this.moves = new int[maxDepth + 1][width * height];
+		this.flips = new int[width * height];
+	}
+
+	/**
+	 * Counts the leaf nodes of the game tree below a position.
+	 *
+	 * @param board
+	 *            The position. It is not modified.
+	 * @param color
+	 *            The side to move.
+	 * @param depth
+	 *            The number of plies to search.
+	 */
+	public long perft(final ReversiBoard board, final PieceColor color,
+			final int depth) {
+		return perft(board, color, depth, false);
+	}
+
+	private long perft(final ReversiBoard board, final PieceColor color,
+			final int depth, final boolean passed) {
+		if (depth == 0) {
+			return 1;
+		}
+		int[] cells = this.moves[depth];
+		int count = board.getLegalMoves(color, cells);
+		PieceColor opponent = PieceColor.opposite(color);
+		if (count == 0) {
+			if (passed) {
+				// Neither side can move, the game is over.
+				return 1;
+			}
+			return perft(board, opponent, depth - 1, true);
+		}
+		if (depth == 1) {
+			return count;
+		}
+		long nodes = 0;
+		for (int i = 0; i < count; i++) {
+			ReversiBoard child = board.copy();
+			int x = cells[i] % this.width;
+			int y = cells[i] / this.width;
+			int flipped = child.getFlips(color, x, y, this.flips);
+			child.set(x, y, color);
+			for (int j = 0; j < flipped; j++) {
+				child.set(this.flips[j] % this.width,
+						this.flips[j] / this.width, color);
+			}
+			nodes += perft(child, opponent, depth - 1, false);
+		}
+		return nodes;
+	}
+
+	/**
+	 * Parses a position in the format described in the class comment.
+	 *
+	 * @return The side to move.
+	 * @throws IllegalArgumentException
+	 *             if the position is malformed.
+	 */
+	private static PieceColor parseSide(final String position) {
+		String[] parts = position.trim().split("\\s+");
+		if (parts.length != 2) {
+			throw new IllegalArgumentException("Expected rows and side to move: "
+					+ position);
+		}
+		return parseColor(parts[1].charAt(0));
+	}
+
+	private static String[] parseRows(final String position) {
+		String[] rows = position.trim().split("\\s+")[0].split("/");
+		for (String row : rows) {
+			if (row.length() != rows[0].length()) {
+				throw new IllegalArgumentException("Rows of unequal length: "
+						+ position);
+			}
+		}
+		return rows;
+	}
+
+	private static PieceColor parseColor(final char c) {
+		switch (c) {
+			case 'X':
+				return PieceColor.BLACK;
+			case 'O':
+				return PieceColor.WHITE;
+			case '-':
+				return PieceColor.EMPTY;
+			default:
+				throw new IllegalArgumentException("Unknown piece: " + c);
+		}
+	}
+
+	private static ReversiBoard createBoard(final BoardType type,
+			final int width, final int height) {
+		if (type == BoardType.BITBOARD) {
+			return new BitboardReversiBoard(width, height);
+		}
+		return new ArrayReversiBoard(width, height);
+	}
+
+	private static ReversiBoard parseBoard(final String position,
+			final BoardType type) {
+		String[] rows = parseRows(position);
+		ReversiBoard board = createBoard(type, rows[0].length(), rows.length);
+		for (int y = 0; y < rows.length; y++) {
+			for (int x = 0; x < rows[y].length(); x++) {
+				board.set(x, y, parseColor(rows[y].charAt(x)));
+			}
+		}
+		return board;
+	}
+
+	private static String format(final ReversiBoard board, final PieceColor side) {
+		StringBuilder sb = new StringBuilder();
+		for (int y = 0; y < board.getHeight(); y++) {
+			if (y > 0) {
+				sb.append('/');
+			}
+			for (int x = 0; x < board.getWidth(); x++) {
+				PieceColor piece = board.get(x, y);
+				sb.append(piece == PieceColor.BLACK ? 'X'
+						: piece == PieceColor.WHITE ? 'O' : '-');
+			}
+		}
+		return sb.append(side == PieceColor.BLACK ? " X" : " O").toString();
+	}
+
+	public static void main(final String[] args) {
+		if (args.length < 1) {
+			System.err.println("Usage: ReversiPerft depth [array|bitboard]"
+					+ " [start|model|position]");
+			System.exit(2);
+		}
+		int maxDepth = Integer.parseInt(args[0]);
+		BoardType type = args.length > 1
+				? BoardType.valueOf(args[1].toUpperCase())
+				: BoardType.BITBOARD;
+		String position = args.length > 2 ? args[2] : "start";
+		if (position.equals("start")) {
+			position = START_8X8;
+		} else if (position.equals("model")) {
+			position = format(new ReversiModel().copyBoard(), PieceColor.BLACK);
+		}
+
+		ReversiBoard board = parseBoard(position, type);
+		PieceColor side = parseSide(position);
+		boolean known = position.equals(START_8X8);
+
+		// Cross-check against the other representation if it fits.
+		ReversiBoard reference = null;
+		if (type == BoardType.BITBOARD) {
+			reference = parseBoard(position, BoardType.ARRAY);
+		} else if (board.getWidth() * board.getHeight()
+				<= BitboardReversiBoard.MAX_CELLS) {
+			reference = parseBoard(position, BoardType.BITBOARD);
+		}
+
+		System.out.println("Perft " + type + " " + position);
+		ReversiPerft perft = new ReversiPerft(board.getWidth(),
+				board.getHeight(), maxDepth);
+		boolean ok = true;
+		for (int depth = 1; depth <= maxDepth; depth++) {
+			long start = System.nanoTime();
+			long nodes = perft.perft(board, side, depth);
+			long elapsed = Math.max(1, System.nanoTime() - start);
+
+			String status = "";
+			if (known && depth < KNOWN_8X8.length) {
+				if (nodes == KNOWN_8X8[depth]) {
+					status = " ok";
+				} else {
+					status = " FAILED, expected " + KNOWN_8X8[depth];
+					ok = false;
+				}
+			}
+			if (reference != null) {
+				long expected = perft.perft(reference, side, depth);
+				if (expected != nodes) {
+					status += " MISMATCH, other board counts " + expected;
+					ok = false;
+				}
+			}
+
+			System.out.println("depth " + depth + ": " + nodes + " nodes in "
+					+ elapsed / 1000000 + " ms, "
+					+ nodes * 1000000000L / elapsed + " nodes/s" + status);
+		}
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package orig2011.v7;
+
+import orig2011.v7.ReversiModel.Turn;
+
+/**
+ * A computer controlled side in a game of Reversi.
+ */
+public interface ReversiPlayer {
+
+	/**
+	 * Chooses the next move for the side to move.
+	 *
+	 * @param board
+	 *            A private copy of the current board, which the player is
+	 *            free to modify.
+	 * @param turn
+	 *            The side to move. It has at least one legal move.
+	 * @return The position to place a disc on.
+	 */
+	public Position chooseMove(final ReversiBoard board, final Turn turn);
+
+	/**
+	 * Releases the threads the player may have started. Called when the
+	 * game is over or abandoned, possibly from another thread than the one
+	 * choosing the moves. A player asked for another move afterwards must
+	 * still choose one.
+	 */
+	public void shutdown();
+}
@@ -1,13 +1,11 @@
 package orig2011.v7;
 
 import java.awt.*;
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
 import orig2011.v7.ReversiModel.Turn;
 
 import javax.swing.*;
 
-public class ReversiScoreView extends JFrame implements PropertyChangeListener {
+public class ReversiScoreView extends JFrame implements IChangeSetListener {
 
     private Turn playerTurn = Turn.BLACK;
     private int blackScore = 0;
@@ -22,20 +20,20 @@ public class ReversiScoreView extends JFrame implements PropertyChangeListener {
         this.setVisible(true);
     }
 
-    public void propertyChange(PropertyChangeEvent evt) {
-        if (evt.getSource().getClass() == ReversiModel.class) {
-            if (evt.getPropertyName().equals("whiteScore")) {
-                whiteScore = (Integer) evt.getNewValue();
-            } else if (evt.getPropertyName().equals("blackScore")) {
-                blackScore = (Integer) evt.getNewValue();
-            } else if (evt.getPropertyName().equals("turn")) {
-                playerTurn = (Turn) evt.getNewValue();
+    public void modelChanged(ChangeSet changes) {
+        if (changes.getSource().getClass() == ReversiModel.class) {
+            if (changes.hasProperty("whiteScore")) {
+                whiteScore = (Integer) changes.getNewValue("whiteScore");
+            }
+            if (changes.hasProperty("blackScore")) {
+                blackScore = (Integer) changes.getNewValue("blackScore");
+            }
+            if (changes.hasProperty("turn")) {
+                playerTurn = (Turn) changes.getNewValue("turn");
             }
         }
 
         repaint();
-
-        System.out.println(playerTurn.toString() + " - " + whiteScore + " - " + blackScore);
     }
 
     public class ScorePanel extends JPanel {
@@ -0,0 +1,406 @@
+package orig2011.v7;
+
+import orig2011.v7.ReversiModel.PieceColor;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Negamax alpha-beta search for Reversi with iterative deepening.
+ *
+ * Moves are ordered by a static table of cell weights, and the best move
+ * of the previous iteration is searched first at the root. Results are
+ * kept in an optional transposition table, which both short-cuts
+ * transposed positions and supplies the first move to try in positions
+ * seen by an earlier iteration. The search is stopped when its time
+ * budget runs out, returning the best move of the deepest completed
+ * iteration.
+ *
+ * An instance keeps per-search scratch state and must not be used by
+ * more than one thread at a time. Several instances may share one
+ * transposition table; the owner of the table should call newSearch on
+ * it before every search.
+ */
+public class ReversiSearch {
+
+	/** Score bonus for a won game, larger than any evaluation. */
+	public static final int WIN = 1000000;
+
+	private static final int INFINITY = Integer.MAX_VALUE / 2;
+
+	/** How many nodes to visit between checks of the clock. */
+	private static final int CLOCK_INTERVAL = 1024;
+
+	/** Stop signal of searches which can only run out of time. */
+	private static final AtomicBoolean NEVER = new AtomicBoolean();
+
+	private static final int CORNER_WEIGHT = 100;
+	private static final int X_SQUARE_WEIGHT = -25;
+	private static final int C_SQUARE_WEIGHT = -10;
+	private static final int EDGE_WEIGHT = 10;
+	private static final int INNER_WEIGHT = 1;
+	private static final int MOBILITY_WEIGHT = 5;
+
+	private final int width;
+	private final int height;
+
+	/** Positional value of each cell, indexed by cell index. */
+	private final int[] weights;
+
+	/** Move lists per ply, allocated on demand. */
+	private int[][] moveBuffers;
+
+	/** Ordering keys matching moveBuffers. */
+	private int[][] orderBuffers;
+
+	private final int[] flips;
+
+	/** Shared results of earlier searches, may be null. */
+	private final TranspositionTable table;
+
+	private long nodes;
+	private long deadline;
+	private AtomicBoolean stop;
+	private boolean aborted;
+	private int completedDepth;
+	private int score;
+	private long elapsedNanos;
+
+	/**
+	 * Creates a search for boards of the given size.
+	 */
+	public ReversiSearch(final int width, final int height) {
+		this(width, height, null);
+	}
+
+	/**
+	 * Creates a search for boards of the given size which stores its
+	 * results in the given transposition table.
+	 */
+	public ReversiSearch(final int width, final int height,
+			final TranspositionTable table) {
+		this.table = table;
+		this.width = width;
+		this.height = height;
+		this.weights = new int[width * height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				this.weights[y * width + x] = cellWeight(x, y);
+			}
+		}
+		this.flips = new int[width * height];
+		this.moveBuffers = new int[0][];
+		this.orderBuffers = new int[0][];
+	}
+
+	private int cellWeight(final int x, final int y) {
+		int dx = Math.min(x, this.width - 1 - x);
+		int dy = Math.min(y, this.height - 1 - y);
+		if (dx == 0 && dy == 0) {
+			return CORNER_WEIGHT;
+		} else if (dx == 1 && dy == 1) {
+			return X_SQUARE_WEIGHT;
+		} else if ((dx == 0 && dy == 1) || (dx == 1 && dy == 0)) {
+			return C_SQUARE_WEIGHT;
+		} else if (dx == 0 || dy == 0) {
+			return EDGE_WEIGHT;
+		}
+		return INNER_WEIGHT;
+	}
+
+	/**
+	 * Searches for the best move of the given color.
+	 *
+	 * @param board
+	 *            The position to search. It is not modified.
+	 * @param color
+	 *            The side to move.
+	 * @param budgetNanos
+	 *            Time allowed for the search. The first iteration always
+	 *            completes.
+	 * @param maxDepth
+	 *            The deepest iteration to search.
+	 * @return The cell index of the best move, or -1 if there is no legal
+	 *         move.
+	 */
+	public int search(final ReversiBoard board, final PieceColor color,
+			final long budgetNanos, final int maxDepth) {
+		return search(board, color, budgetNanos, 1, maxDepth, NEVER);
+	}
+
+	/**
+	 * Searches for the best move of the given color, starting the
+	 * iterations at the given depth and aborting as soon as the stop
+	 * signal is raised by another thread.
+	 *
+	 * @see #search(ReversiBoard, PieceColor, long, int)
+	 */
+	int search(final ReversiBoard board, final PieceColor color,
+			final long budgetNanos, final int firstDepth, final int maxDepth,
+			final AtomicBoolean stop) {
+		long start = System.nanoTime();
+		this.nodes = 0;
+		this.aborted = false;
+		this.completedDepth = 0;
+		this.score = 0;
+		this.deadline = Long.MAX_VALUE;
+		this.stop = stop;
+
+		int[] moves = moveBuffer(0);
+		int count = board.getLegalMoves(color, moves);
+		if (count == 0) {
+			this.elapsedNanos = System.nanoTime() - start;
+			return -1;
+		}
+		orderMoves(moves, count, -1, 0);
+
+		int bestMove = moves[0];
+		int depthLimit = Math.min(maxDepth, board.count(PieceColor.EMPTY));
+		for (int depth = Math.min(firstDepth, depthLimit); depth <= depthLimit;
+				depth++) {
+			int alpha = -INFINITY;
+			int iterationBest = -1;
+			for (int i = 0; i < count; i++) {
+				ReversiBoard child = board.copy();
+				play(child, color, moves[i]);
+				int value = -negamax(child, PieceColor.opposite(color),
+						depth - 1, -INFINITY, -alpha, 1, false);
+				if (this.aborted) {
+					break;
+				}
+				if (value > alpha) {
+					alpha = value;
+					iterationBest = moves[i];
+				}
+			}
+			if (this.aborted) {
+				break;
+			}
+			bestMove = iterationBest;
+			this.score = alpha;
+			if (this.table != null) {
+				this.table.store(hash(board, color), depth,
+						TranspositionTable.EXACT, alpha, bestMove);
+			}
+			this.completedDepth = depth;
+			// The clock only applies once an iteration has completed.
+			this.deadline = budgetNanos >= Long.MAX_VALUE - start
+					? Long.MAX_VALUE
+					: start + budgetNanos;
+			orderMoves(moves, count, bestMove, 0);
+		}
+
+		this.elapsedNanos = System.nanoTime() - start;
+		return bestMove;
+	}
+
+	private int negamax(final ReversiBoard board, final PieceColor color,
+			final int depth, int alpha, int beta, final int ply,
+			final boolean passed) {
+		this.nodes++;
+		if ((this.nodes % CLOCK_INTERVAL) == 0
+				&& (System.nanoTime() > this.deadline || this.stop.get())) {
+			this.aborted = true;
+		}
+		if (this.aborted) {
+			return 0;
+		}
+		if (depth == 0) {
+			return evaluate(board, color);
+		}
+
+		int alphaOrig = alpha;
+		int betaOrig = beta;
+		long hash = 0;
+		int tableMove = -1;
+		if (this.table != null) {
+			hash = hash(board, color);
+			long entry = this.table.probe(hash);
+			if (entry != 0) {
+				int move = TranspositionTable.getMove(entry);
+				if (move != TranspositionTable.NO_MOVE) {
+					tableMove = move;
+				}
+				if (TranspositionTable.getDepth(entry) >= depth) {
+					int stored = TranspositionTable.getScore(entry);
+					int flag = TranspositionTable.getFlag(entry);
+					if (flag == TranspositionTable.EXACT) {
+						return stored;
+					} else if (flag == TranspositionTable.LOWER) {
+						alpha = Math.max(alpha, stored);
+					} else {
+						beta = Math.min(beta, stored);
+					}
+					if (alpha >= beta) {
+						return stored;
+					}
+				}
+			}
+		}
+
+		PieceColor opponent = PieceColor.opposite(color);
+		int[] moves = moveBuffer(ply);
+		int count = board.getLegalMoves(color, moves);
+		if (count == 0) {
+			if (passed) {
+				return finalScore(board, color);
+			}
+			return -negamax(board, opponent, depth, -beta, -alpha, ply + 1,
+					true);
+		}
+		orderMoves(moves, count, tableMove, ply);
+
+		int best = -INFINITY;
+		int bestMove = -1;
+		for (int i = 0; i < count; i++) {
+			ReversiBoard child = board.copy();
+			play(child, color, moves[i]);
+			int value = -negamax(child, opponent, depth - 1, -beta, -alpha,
+					ply + 1, false);
+			if (this.aborted) {
+				return 0;
+			}
+			if (value > best) {
+				best = value;
+				bestMove = moves[i];
+				if (value > alpha) {
+					alpha = value;
+					if (alpha >= beta) {
+						break;
+					}
+				}
+			}
+		}
+
+		if (this.table != null) {
+			int flag;
+			if (best <= alphaOrig) {
+				flag = TranspositionTable.UPPER;
+			} else if (best >= betaOrig) {
+				flag = TranspositionTable.LOWER;
+			} else {
+				flag = TranspositionTable.EXACT;
+			}
+			this.table.store(hash, depth, flag, best, bestMove);
+		}
+		return best;
+	}
+
+	private static long hash(final ReversiBoard board, final PieceColor color) {
+		long hash = board.getHash();
+		return color == PieceColor.WHITE ? hash ^ Zobrist.SIDE_TO_MOVE : hash;
+	}
+
+	/**
+	 * Static evaluation from the point of view of color: positional weights
+	 * of the discs plus the difference in mobility.
+	 */
+	private int evaluate(final ReversiBoard board, final PieceColor color) {
+		PieceColor opponent = PieceColor.opposite(color);
+		int value = 0;
+		for (int y = 0; y < this.height; y++) {
+			for (int x = 0; x < this.width; x++) {
+				PieceColor piece = board.get(x, y);
+				if (piece == color) {
+					value += this.weights[y * this.width + x];
+				} else if (piece == opponent) {
+					value -= this.weights[y * this.width + x];
+				}
+			}
+		}
+		int mobility = board.getLegalMoves(color, this.flips)
+				- board.getLegalMoves(opponent, this.flips);
+		return value + MOBILITY_WEIGHT * mobility;
+	}
+
+	private int finalScore(final ReversiBoard board, final PieceColor color) {
+		int diff = board.count(color) - board.count(PieceColor.opposite(color));
+		if (diff > 0) {
+			return WIN + diff;
+		} else if (diff < 0) {
+			return -WIN + diff;
+		}
+		return 0;
+	}
+
+	/**
+	 * Places a disc of the given color and turns over the captured discs.
+	 */
+	private void play(final ReversiBoard board, final PieceColor color,
+			final int cell) {
+		int count = board.getFlips(color, cell % this.width,
+				cell / this.width, this.flips);
+		board.set(cell % this.width, cell / this.width, color);
+		for (int i = 0; i < count; i++) {
+			board.set(this.flips[i] % this.width, this.flips[i] / this.width,
+					color);
+		}
+	}
+
+	/**
+	 * Sorts the moves by descending cell weight, with the given move first.
+	 */
+	private void orderMoves(final int[] moves, final int count,
+			final int firstMove, final int ply) {
+		int[] keys = this.orderBuffers[ply];
+		for (int i = 0; i < count; i++) {
+			keys[i] = moves[i] == firstMove ? INFINITY : this.weights[moves[i]];
+		}
+		for (int i = 1; i < count; i++) {
+			int move = moves[i];
+			int key = keys[i];
+			int j = i - 1;
+			while (j >= 0 && keys[j] < key) {
+				moves[j + 1] = moves[j];
+				keys[j + 1] = keys[j];
+				j--;
+			}
+			moves[j + 1] = move;
+			keys[j + 1] = key;
+		}
+	}
+
+	private int[] moveBuffer(final int ply) {
+		if (ply >= this.moveBuffers.length) {
+			int size = Math.max(ply + 1, this.moveBuffers.length * 2);
+			int[][] moves = new int[size][];
+			int[][] keys = new int[size][];
+			System.arraycopy(this.moveBuffers, 0, moves, 0, this.moveBuffers.length);
+			System.arraycopy(this.orderBuffers, 0, keys, 0, this.orderBuffers.length);
+			for (int i = this.moveBuffers.length; i < size; i++) {
+				moves[i] = new int[this.width * this.height];
+				keys[i] = new int[this.width * this.height];
+			}
+			this.moveBuffers = moves;
+			this.orderBuffers = keys;
+		}
+		return this.moveBuffers[ply];
+	}
+
+	/** @return The number of nodes visited by the last search. */
+	public long getNodes() {
+		return this.nodes;
+	}
+
+	/** @return The deepest iteration completed by the last search. */
+	public int getCompletedDepth() {
+		return this.completedDepth;
+	}
+
+	/** @return The score of the best move of the last search. */
+	public int getScore() {
+		return this.score;
+	}
+
+	/** @return The duration of the last search in nanoseconds. */
+	public long getElapsedNanos() {
+		return this.elapsedNanos;
+	}
+
+	/** @return The node throughput of the last search. */
+	public long getNodesPerSecond() {
+		if (this.elapsedNanos <= 0) {
+			return 0;
+		}
+		return this.nodes * 1000000000L / this.elapsedNanos;
+	}
+}
@@ -0,0 +1,149 @@
+package orig2011.v7;
+
+import orig2011.v7.ReversiModel.PieceColor;
+import orig2011.v7.ReversiModel.Turn;
+
+/**
+ * An immutable Reversi position: the pieces, the side to move, the
+ * scores and the cursor.
+ *
+ * The pieces are kept as one array per row, and a snapshot derived from
+ * another one shares every row it didn't change. A move touches a few
+ * rows, so keeping the snapshot after every move of a game costs little
+ * more than the changed rows, and analysis tools can branch off any
+ * snapshot with with() without copying the board.
+ */
+public final class ReversiSnapshot {
+
+	private final int width;
+	private final int height;
+
+	/** The pieces, indexed [y][x]. Rows are shared and never changed. */
+	private final PieceColor[][] rows;
+
+	private final Turn turn;
+	private final int blackScore;
+	private final int whiteScore;
+	private final boolean gameOver;
+
+	/** Where the cursor was when the snapshot was taken. */
+	private final Position cursor;
+
+	/**
+	 * Creates a snapshot owning the given rows. The caller must not change
+	 * them afterwards.
+	 */
+	ReversiSnapshot(final PieceColor[][] rows, final int width,
+			final Turn turn, final int blackScore, final int whiteScore,
+			final boolean gameOver, final Position cursor) {
+		this.width = width;
+		this.height = rows.length;
+		this.rows = rows;
+		this.turn = turn;
+		this.blackScore = blackScore;
+		this.whiteScore = whiteScore;
+		this.gameOver = gameOver;
+		this.cursor = cursor;
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * @return The piece in logical position (x,y).
+	 */
+	public PieceColor get(final int x, final int y) {
+		return this.rows[y][x];
+	}
+
+	/** @return The side to move. */
+	public Turn getTurn() {
+		return this.turn;
+	}
+
+	public int getBlackScore() {
+		return this.blackScore;
+	}
+
+	public int getWhiteScore() {
+		return this.whiteScore;
+	}
+
+	public boolean isGameOver() {
+		return this.gameOver;
+	}
+
+	/** @return The position of the cursor. */
+	public Position getCursor() {
+		return this.cursor;
+	}
+
+	/**
+	 * @return The row y, shared with other snapshots. Must not be changed.
+	 */
+	PieceColor[] row(final int y) {
+		return this.rows[y];
+	}
+
+	/**
+	 * @return Whether this snapshot and the other one share row y, and so
+	 *         certainly have the same pieces in it.
+	 */
+	boolean sharesRow(final ReversiSnapshot other, final int y) {
+		return this.rows[y] == other.rows[y];
+	}
+
+	/**
+	 * Returns a snapshot with another piece at (x,y) and everything else
+	 * the same. Only row y is copied. No rules are applied and the scores
+	 * are kept.
+	 */
+	public ReversiSnapshot with(final int x, final int y,
+			final PieceColor color) {
+		if (this.rows[y][x] == color) {
+			return this;
+		}
+		PieceColor[][] newRows = this.rows.clone();
+		newRows[y] = this.rows[y].clone();
+		newRows[y][x] = color;
+		return new ReversiSnapshot(newRows, this.width, this.turn,
+				this.blackScore, this.whiteScore, this.gameOver, this.cursor);
+	}
+
+	/**
+	 * Returns a snapshot with another side to move.
+	 */
+	public ReversiSnapshot withTurn(final Turn newTurn) {
+		if (newTurn == this.turn) {
+			return this;
+		}
+		return new ReversiSnapshot(this.rows, this.width, newTurn,
+				this.blackScore, this.whiteScore, this.gameOver, this.cursor);
+	}
+
+	/**
+	 * Returns a mutable board holding the pieces of this snapshot, for
+	 * evaluating the rules or searching from this position.
+	 */
+	public ReversiBoard toBoard() {
+		ReversiBoard board;
+		if (this.width * this.height <= BitboardReversiBoard.MAX_CELLS) {
+			board = new BitboardReversiBoard(this.width, this.height);
+		} else {
+			board = new ArrayReversiBoard(this.width, this.height);
+		}
+		for (int y = 0; y < this.height; y++) {
+			for (int x = 0; x < this.width; x++) {
+				if (this.rows[y][x] != PieceColor.EMPTY) {
+					board.set(x, y, this.rows[y][x]);
+				}
+			}
+		}
+		return board;
+	}
+}
@@ -0,0 +1,344 @@
+package orig2011.v7;
+
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import orig2011.v7.ReversiModel.Turn;
+
+/**
+ * Runs many games headless, without a GameView or GameController. Every
+ * game is driven by a key stream and updated in a tight loop, ignoring the
+ * update speed of the model. Games run in parallel on a thread pool, and
+ * the throughput and score distribution are reported at the end.
+ *
+ * Usage: SimulationRunner game [games] [random|KEY,KEY,...] [seed] [threads]
+ * [WIDTHxHEIGHT]
+ *
+ * A key script is a comma separated list of LEFT, UP, RIGHT, DOWN, SPACE
+ * and NONE, repeated until the game ends. The random stream picks among
+ * the same keys.
+ */
+public class SimulationRunner {
+
+	/** Keys the key streams are made of. NONE is sent as 0. */
+	private static final String[] KEY_NAMES = { "NONE", "LEFT", "UP", "RIGHT",
+			"DOWN", "SPACE" };
+	private static final int[] KEY_CODES = { 0, KeyEvent.VK_LEFT,
+			KeyEvent.VK_UP, KeyEvent.VK_RIGHT, KeyEvent.VK_DOWN,
+			KeyEvent.VK_SPACE };
+
+	/** Games still running after this many updates are given up. */
+	private static final int DEFAULT_MAX_TICKS = 100000;
+
+	private final IGameFactory factory;
+	private final String gameName;
+	private final GameConfig config;
+	private final int[] script;
+	private final long seed;
+	private final int maxTicks;
+
+	/**
+	 * Creates a runner for the given game.
+	 *
+	 * @param script
+	 *            The keys to send, repeated. null for random keys.
+	 * @param seed
+	 *            Seed of the random key streams; game i uses seed + i.
+	 */
+	public SimulationRunner(final IGameFactory factory, final String gameName,
+			final int[] script, final long seed, final int maxTicks) {
+		this(factory, gameName, GameConfig.getDefault(), script, seed,
+				maxTicks);
+	}
+
+	/**
+	 * Creates a runner for the given game, played with the given
+	 * configuration.
+	 *
+	 * @param script
+	 *            The keys to send, repeated. null for random keys.
+	 * @param seed
+	 *            Seed of the random key streams; game i uses seed + i.
+	 *            Also seeds game i unless the configuration has a seed.
+	 */
+	public SimulationRunner(final IGameFactory factory, final String gameName,
+			final GameConfig config, final int[] script, final long seed,
+			final int maxTicks) {
+		this.factory = factory;
+		this.gameName = gameName;
+		this.config = config;
+		this.script = script;
+		this.seed = seed;
+		this.maxTicks = maxTicks;
+	}
+
+	/**
+	 * The outcome of a single game.
+	 */
+	public static final class Result {
+		private final boolean finished;
+		private final int score;
+		private final int ticks;
+
+		/*
+		 * Totals of the moves searched and solved by AlphaBetaPlayers in
+		 * the game.
+		 */
+		private int searchedMoves;
+		private long searchedDepths;
+		private long searchNodes;
+		private long searchNanos;
+		private int solvedMoves;
+		private long solveNodes;
+		private long solveNanos;
+
+		Result(final boolean finished, final int score, final int ticks) {
+			this.finished = finished;
+			this.score = score;
+			this.ticks = ticks;
+		}
+
+		/**
+		 * Adds the moves searched and solved by the computer players of the model, if
+		 * it is a game of Reversi.
+		 */
+		Result withSearchesOf(final GameModel model) {
+			if (model instanceof ReversiModel) {
+				for (Turn turn : Turn.values()) {
+					ReversiPlayer player = ((ReversiModel) model).getPlayer(turn);
+					if (player instanceof AlphaBetaPlayer) {
+						AlphaBetaPlayer ai = (AlphaBetaPlayer) player;
+						this.searchedMoves += ai.getSearchedMoves();
+						this.searchedDepths += ai.getSearchedDepths();
+						this.searchNodes += ai.getSearchNodes();
+						this.searchNanos += ai.getSearchNanos();
+						this.solvedMoves += ai.getSolvedMoves();
+						this.solveNodes += ai.getSolveNodes();
+						this.solveNanos += ai.getSolveNanos();
+					}
+				}
+			}
+			return this;
+		}
+
+		/** @return false if the game was given up after the tick limit. */
+		public boolean isFinished() {
+			return this.finished;
+		}
+
+		/** @return The score of the GameOverException. */
+		public int getScore() {
+			return this.score;
+		}
+
+		/** @return The number of updates played. */
+		public int getTicks() {
+			return this.ticks;
+		}
+
+		/** @return The number of moves chosen by an alpha-beta search. */
+		public int getSearchedMoves() {
+			return this.searchedMoves;
+		}
+
+		/** @return The sum of the depths completed by the searched moves. */
+		public long getSearchedDepths() {
+			return this.searchedDepths;
+		}
+
+		/** @return The number of nodes visited by the searched moves. */
+		public long getSearchNodes() {
+			return this.searchNodes;
+		}
+
+		/** @return The time spent on the searched moves in nanoseconds. */
+		public long getSearchNanos() {
+			return this.searchNanos;
+		}
+
+		/** @return The number of moves chosen by the endgame solver. */
+		public int getSolvedMoves() {
+			return this.solvedMoves;
+		}
+
+		/** @return The number of nodes visited by the solved moves. */
+		public long getSolveNodes() {
+			return this.solveNodes;
+		}
+
+		/** @return The time spent on the solved moves in nanoseconds. */
+		public long getSolveNanos() {
+			return this.solveNanos;
+		}
+	}
+
+	/**
+	 * Plays one game to the end.
+	 *
+	 * @param index
+	 *            The number of the game, selects its random key stream.
+	 */
+	public Result runGame(final int index) {
+		GameConfig gameConfig = this.config.hasSeed() ? this.config
+				: this.config.withSeed(this.seed + index);
+		GameModel model = this.factory.createGame(this.gameName, gameConfig);
+		Random random = new Random(this.seed + index);
+		int tick = 0;
+		try {
+			while (tick < this.maxTicks) {
+				int key;
+				if (this.script != null) {
+					key = this.script[tick % this.script.length];
+				} else {
+					key = KEY_CODES[random.nextInt(KEY_CODES.length)];
+				}
+				tick++;
+				model.gameUpdate(key);
+			}
+		} catch (GameOverException e) {
+			return new Result(true, e.getScore(), tick).withSearchesOf(model);
+		}
+		if (model instanceof ReversiModel) {
+			((ReversiModel) model).shutdownPlayers();
+		}
+		return new Result(false, 0, tick).withSearchesOf(model);
+	}
+
+	/**
+	 * Plays the given number of games on a pool of threads.
+	 */
+	public List<Result> runGames(final int games, final int threads)
+			throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Result>> futures = new ArrayList<Future<Result>>(games);
+			for (int i = 0; i < games; i++) {
+				final int index = i;
+				futures.add(pool.submit(new Callable<Result>() {
+					@Override
+					public Result call() {
+						return runGame(index);
+					}
+				}));
+			}
+			List<Result> results = new ArrayList<Result>(games);
+			for (Future<Result> future : futures) {
+				try {
+					results.add(future.get());
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Game failed", e.getCause());
+				}
+			}
+			return results;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static int[] parseScript(final String script) {
+		String[] names = script.split(",");
+		int[] keys = new int[names.length];
+		for (int i = 0; i < names.length; i++) {
+			keys[i] = -1;
+			for (int k = 0; k < KEY_NAMES.length; k++) {
+				if (KEY_NAMES[k].equalsIgnoreCase(names[i].trim())) {
+					keys[i] = KEY_CODES[k];
+				}
+			}
+			if (keys[i] < 0) {
+				throw new IllegalArgumentException("Unknown key: " + names[i]);
+			}
+		}
+		return keys;
+	}
+
+	public static void main(final String[] args) throws InterruptedException {
+		if (args.length < 1) {
+			System.err.println("Usage: SimulationRunner game [games]"
+					+ " [random|KEY,KEY,...] [seed] [threads] [WIDTHxHEIGHT]");
+			System.exit(2);
+		}
+		System.setProperty("java.awt.headless", "true");
+		String gameName = args[0];
+		int games = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int[] script = args.length > 2 && !args[2].equals("random")
+				? parseScript(args[2])
+				: null;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+		int threads = args.length > 4 ? Integer.parseInt(args[4])
+				: Runtime.getRuntime().availableProcessors();
+		GameConfig config = args.length > 5 ? GameConfig.parse(args[5])
+				: GameConfig.getDefault();
+
+		SimulationRunner runner = new SimulationRunner(new ReversiFactory(),
+				gameName, config, script, seed, DEFAULT_MAX_TICKS);
+
+		long start = System.nanoTime();
+		List<Result> results = runner.runGames(games, threads);
+		long elapsed = Math.max(1, System.nanoTime() - start);
+
+		Map<Integer, Integer> histogram = new TreeMap<Integer, Integer>();
+		long ticks = 0;
+		long scoreSum = 0;
+		int finished = 0;
+		long searchedMoves = 0;
+		long searchedDepths = 0;
+		long searchNodes = 0;
+		long searchNanos = 0;
+		long solvedMoves = 0;
+		long solveNodes = 0;
+		long solveNanos = 0;
+		for (Result r : results) {
+			ticks += r.getTicks();
+			searchedMoves += r.getSearchedMoves();
+			searchedDepths += r.getSearchedDepths();
+			searchNodes += r.getSearchNodes();
+			searchNanos += r.getSearchNanos();
+			solvedMoves += r.getSolvedMoves();
+			solveNodes += r.getSolveNodes();
+			solveNanos += r.getSolveNanos();
+			if (r.isFinished()) {
+				finished++;
+				scoreSum += r.getScore();
+				Integer count = histogram.get(Integer.valueOf(r.getScore()));
+				histogram.put(Integer.valueOf(r.getScore()),
+						Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+			}
+		}
+
+		System.out.println(gameName + " " + config + ": " + games
+				+ " games on " + threads + " threads in " + elapsed / 1000000 + " ms");
+		System.out.println(String.format("%.1f games/s, %.0f updates/s",
+				games * 1e9 / elapsed, ticks * 1e9 / elapsed));
+		System.out.println(finished + " finished, " + (games - finished)
+				+ " given up after " + DEFAULT_MAX_TICKS + " updates");
+		if (searchedMoves > 0) {
+			System.out.println(String.format(
+					"%d searched moves, mean depth %.1f, %d nodes/s",
+					searchedMoves, (double) searchedDepths / searchedMoves,
+					searchNodes * 1000000000L / Math.max(1, searchNanos)));
+		}
+		if (solvedMoves > 0) {
+			System.out.println(String.format("%d solved moves, %d nodes/s",
+					solvedMoves,
+					solveNodes * 1000000000L / Math.max(1, solveNanos)));
+		}
+		if (finished > 0) {
+			System.out.println(String.format("Score mean %.2f",
+					(double) scoreSum / finished));
+			for (Map.Entry<Integer, Integer> e : histogram.entrySet()) {
+				System.out.println(String.format("%6d: %d", e.getKey(),
+						e.getValue()));
+			}
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package orig2011.v7;
+
+/**
+ * Keeps the tile listeners of a model and delivers tile changes to them,
+ * in the manner of PropertyChangeSupport.
+ *
+ * The listeners are kept in an array which is replaced on every add or
+ * remove, so firing iterates without locking or allocating, and a model
+ * without listeners pays a single field read per change.
+ */
+public class TileChangeSupport {
+
+	private static final ITileListener[] NO_LISTENERS = new ITileListener[0];
+
+	private volatile ITileListener[] listeners = NO_LISTENERS;
+
+	/**
+	 * Add a listener to be notified of tile changes.
+	 */
+	public synchronized void addTileListener(final ITileListener listener) {
+		if (listener == null) {
+			return;
+		}
+		ITileListener[] old = this.listeners;
+		ITileListener[] updated = new ITileListener[old.length + 1];
+		System.arraycopy(old, 0, updated, 0, old.length);
+		updated[old.length] = listener;
+		this.listeners = updated;
+	}
+
+	/**
+	 * Remove a listener. If it was added more than once, one of the
+	 * registrations is removed.
+	 */
+	public synchronized void removeTileListener(final ITileListener listener) {
+		ITileListener[] old = this.listeners;
+		for (int i = 0; i < old.length; i++) {
+			if (old[i] == listener) {
+				ITileListener[] updated = new ITileListener[old.length - 1];
+				System.arraycopy(old, 0, updated, 0, i);
+				System.arraycopy(old, i + 1, updated, i, old.length - i - 1);
+				this.listeners = updated;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return true if any listener is registered. Lets a model skip the
+	 *         work of preparing a change nobody will see.
+	 */
+	public boolean hasListeners() {
+		return this.listeners.length > 0;
+	}
+
+	/**
+	 * Notify all listeners of a changed tile. Nothing is fired if the tile
+	 * is unchanged.
+	 */
+	public void fireTileChanged(final int x, final int y,
+			final GameTile oldTile, final GameTile newTile) {
+		if (oldTile == newTile) {
+			return;
+		}
+		ITileListener[] current = this.listeners;
+		for (int i = 0; i < current.length; i++) {
+			current[i].tileChanged(x, y, oldTile, newTile);
+		}
+	}
+}
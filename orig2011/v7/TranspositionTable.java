@@ -0,0 +1,116 @@
+package orig2011.v7;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size hash table of search results, indexed by Zobrist hash.
+ *
+ * Every entry is two longs: the packed result and the hash xor'ed with the
+ * packed result. The table takes no locks; an entry torn by a concurrent
+ * writer fails the xor check and is treated as a miss.
+ *
+ * An entry is replaced by a result searched at least as deep, or by any
+ * result once the entry is left over from an earlier search.
+ */
+public class TranspositionTable {
+
+	/** The stored score is exact. */
+	public static final int EXACT = 0;
+	/** The stored score is a lower bound (the search failed high). */
+	public static final int LOWER = 1;
+	/** The stored score is an upper bound (the search failed low). */
+	public static final int UPPER = 2;
+
+	/** Returned by getMove when no move is stored. */
+	public static final int NO_MOVE = 0xFFFF;
+
+	private final AtomicLongArray table;
+	private final int mask;
+	private volatile int generation;
+
+	/**
+	 * Creates a table holding a power of two number of entries.
+	 *
+	 * @param sizeBits
+	 *            Log2 of the number of entries. Every entry uses 16 bytes.
+	 */
+	public TranspositionTable(final int sizeBits) {
+		if (sizeBits < 1 || sizeBits > 28) {
+			throw new IllegalArgumentException("Invalid table size: 2^"
+					+ sizeBits);
+		}
+		this.table = new AtomicLongArray(2 << sizeBits);
+		this.mask = (1 << sizeBits) - 1;
+	}
+
+	/**
+	 * Marks all entries as left over from an earlier search. Should be
+	 * called once before every new search.
+	 */
+	public void newSearch() {
+		this.generation = (this.generation + 1) & 0x3F;
+	}
+
+	/**
+	 * Looks up a position.
+	 *
+	 * @return The packed entry, to be read with the static accessors, or 0
+	 *         if the position is not stored.
+	 */
+	public long probe(final long hash) {
+		int index = ((int) hash & this.mask) << 1;
+		long data = this.table.get(index);
+		long check = this.table.get(index + 1);
+		if (data != 0 && (check ^ data) == hash) {
+			return data;
+		}
+		return 0;
+	}
+
+	/**
+	 * Stores the result of a search, unless the entry holds a deeper result
+	 * from the current search.
+	 *
+	 * @param move
+	 *            The cell index of the best move, or -1 if unknown.
+	 */
+	public void store(final long hash, final int depth, final int flag,
+			final int score, final int move) {
+		int index = ((int) hash & this.mask) << 1;
+		long old = this.table.get(index);
+		if (old != 0 && getGeneration(old) == this.generation
+				&& getDepth(old) > depth) {
+			return;
+		}
+		int packedMove = move < 0 || move > NO_MOVE ? NO_MOVE : move;
+		long data = ((long) score << 32) | ((long) packedMove << 16)
+				| ((long) Math.min(depth, 0xFF) << 8) | ((long) flag << 6)
+				| this.generation;
+		this.table.set(index, data);
+		this.table.set(index + 1, hash ^ data);
+	}
+
+	/** @return The score of a packed entry. */
+	public static int getScore(final long data) {
+		return (int) (data >> 32);
+	}
+
+	/** @return The best move of a packed entry, or NO_MOVE. */
+	public static int getMove(final long data) {
+		return (int) (data >>> 16) & 0xFFFF;
+	}
+
+	/** @return The search depth of a packed entry. */
+	public static int getDepth(final long data) {
+		return (int) (data >>> 8) & 0xFF;
+	}
+
+	/** @return The bound type of a packed entry: EXACT, LOWER or UPPER. */
+	public static int getFlag(final long data) {
+		return (int) (data >>> 6) & 0x3;
+	}
+
+	private static int getGeneration(final long data) {
+		return (int) data & 0x3F;
+	}
+}
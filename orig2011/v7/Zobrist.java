@@ -0,0 +1,37 @@
+package orig2011.v7;
+
+import orig2011.v7.ReversiModel.PieceColor;
+
+/**
+ * Zobrist keys for Reversi positions. The hash of a position is the xor of
+ * the keys of all discs on the board, plus SIDE_TO_MOVE when white is to
+ * move, so it can be updated incrementally whenever a single cell changes.
+ *
+ * Keys are derived from the cell index with a SplitMix64 finalizer rather
+ * than looked up in a table, so boards of any size share the same keys.
+ */
+public enum Zobrist {
+	;
+	// Safe Singleton pattern, prevent instantiation.
+
+	/** Key toggled when the side to move changes. */
+	public static final long SIDE_TO_MOVE = mix(-1L);
+
+	/**
+	 * @return The key of a disc of the given color on the given cell, 0 for
+	 *         an empty cell.
+	 */
+	public static long key(final int cell, final PieceColor color) {
+		if (color == PieceColor.EMPTY) {
+			return 0;
+		}
+		return mix(2L * cell + color.ordinal());
+	}
+
+	private static long mix(final long value) {
+		long z = value * 0x9E3779B97F4A7C15L + 0x632BE59BD9B4E019L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}